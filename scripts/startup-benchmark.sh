@@ -0,0 +1,72 @@
+#!/usr/bin/env bash
+# Compares the startup time and the memory (RSS) of the pizzaparty build variants:
+#   jvm      the packaged jar on a regular JVM
+#   aot      the same jar running its AOT-processed bean definitions
+#   aot-cds  AOT plus the class-data sharing archive
+#   native   the GraalVM native image, when it has been built
+#
+# Build the variants first (PostgreSQL must be reachable, see src/main/resources/postgres):
+#   mvn -Paot-cds -DskipTests package
+#   mvn -Pnative -DskipTests native:compile   (optional, needs GraalVM)
+# Then run: scripts/startup-benchmark.sh [runs]
+# Extra application arguments (e.g. --spring.datasource.url=...) can be passed in APP_ARGS.
+set -euo pipefail
+
+RUNS=${1:-5}
+cd "$(dirname "$0")/.."
+CDS_DIR=target/cds
+JAR=$(cd "$CDS_DIR" 2>/dev/null && ls pizzaparty-*.jar 2>/dev/null | head -1 || true)
+NATIVE=../pizzaparty
+JAVA=${JAVA_HOME:+$JAVA_HOME/bin/}java
+read -r -a APP_ARGS <<< "${APP_ARGS:-}"
+
+if [[ -z "$JAR" ]]; then
+  echo "No AOT build found in $CDS_DIR: run mvn -Paot-cds -DskipTests package first" >&2
+  exit 1
+fi
+
+# Starts a variant, waits for the "Started" log line and prints the elapsed milliseconds and the RSS in MB
+measure() {
+  local log
+  log=$(mktemp)
+  local start
+  start=$(date +%s%N)
+  "$@" "${APP_ARGS[@]}" > "$log" 2>&1 &
+  local pid=$!
+  until grep -q "Started PizzapartyApplication" "$log"; do
+    if ! kill -0 "$pid" 2>/dev/null; then
+      echo "The application failed to start, see $log" >&2
+      exit 1
+    fi
+    sleep 0.01
+  done
+  local elapsed=$(( ($(date +%s%N) - start) / 1000000 ))
+  local rss
+  rss=$(awk '/VmRSS/ { print int($2 / 1024) }' "/proc/$pid/status")
+  kill "$pid"
+  wait "$pid" 2>/dev/null || true
+  rm -f "$log"
+  echo "$elapsed $rss"
+}
+
+run_variant() {
+  local name=$1
+  shift
+  local total_ms=0 total_rss=0
+  for ((i = 0; i < RUNS; i++)); do
+    read -r ms rss < <(measure "$@")
+    total_ms=$((total_ms + ms))
+    total_rss=$((total_rss + rss))
+  done
+  printf "%-8s %10d %10d\n" "$name" $((total_ms / RUNS)) $((total_rss / RUNS))
+}
+
+# The CDS archive is only used with the class path of the training run, so every variant runs from its directory
+cd "$CDS_DIR"
+printf "%-8s %10s %10s\n" "variant" "start(ms)" "rss(MB)"
+run_variant jvm "$JAVA" -jar "$JAR"
+run_variant aot "$JAVA" -Dspring.aot.enabled=true -jar "$JAR"
+run_variant aot-cds "$JAVA" -XX:SharedArchiveFile=application.jsa -Dspring.aot.enabled=true -jar "$JAR"
+if [[ -x "$NATIVE" ]]; then
+  run_variant native "$NATIVE"
+fi
@@ -2,8 +2,10 @@ package com.pizzaparty;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class PizzapartyApplication {
 	public static void main(String[] args) {
 		SpringApplication.run(PizzapartyApplication.class, args);
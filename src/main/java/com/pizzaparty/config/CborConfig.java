@@ -0,0 +1,66 @@
+package com.pizzaparty.config;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+
+/**
+ * Configuration of the compact binary wire format (CBOR, media type application/cbor).
+ * Clients asking for it in the Accept header get OrderDTOs encoded in CBOR, with the order status
+ * written as its small integer code instead of the enum name. JSON remains the default format.
+ */
+@Configuration
+public class CborConfig {
+
+    /**
+     * Registers the CBOR message converter, used by Spring MVC content negotiation.
+     *
+     * @return The converter reading and writing application/cbor.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter() {
+        return new MappingJackson2CborHttpMessageConverter(createObjectMapper());
+    }
+
+    /**
+     * Creates the ObjectMapper of the compact binary wire format.
+     *
+     * @return A CBOR ObjectMapper writing the order status as its code.
+     */
+    public static ObjectMapper createObjectMapper() {
+        SimpleModule compactStatus = new SimpleModule("CompactOrderStatus")
+                .addSerializer(OrderStatusEnum.class, new OrderStatusCodeSerializer())
+                .addDeserializer(OrderStatusEnum.class, new OrderStatusCodeDeserializer());
+        return Jackson2ObjectMapperBuilder.cbor()
+                .modulesToInstall(compactStatus)
+                .build();
+    }
+
+    // Writes an OrderStatusEnum as its code
+    private static class OrderStatusCodeSerializer extends JsonSerializer<OrderStatusEnum> {
+        @Override
+        public void serialize(OrderStatusEnum status, JsonGenerator generator, SerializerProvider provider) throws IOException {
+            generator.writeNumber(status.getCode());
+        }
+    }
+
+    // Reads an OrderStatusEnum from its code
+    private static class OrderStatusCodeDeserializer extends JsonDeserializer<OrderStatusEnum> {
+        @Override
+        public OrderStatusEnum deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            return OrderStatusEnum.fromCode(parser.getIntValue());
+        }
+    }
+}
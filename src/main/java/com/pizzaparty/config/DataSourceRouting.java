@@ -0,0 +1,56 @@
+package com.pizzaparty.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Thread-bound routing hints for the read/write split between the primary database and the replica.
+ * By default read-only transactions go to the replica and everything else to the primary;
+ * code that must see its own recent writes can force the primary for a block of work.
+ * The hints are ignored when no replica is configured.
+ */
+public final class DataSourceRouting {
+
+    /**
+     * Targets of the routing.
+     */
+    public enum Route {
+        PRIMARY, // Database receiving all writes
+        REPLICA // Read-only copy of the primary, possibly lagging behind it
+    }
+
+    // Route forced for the current thread, null when the default rules apply
+    private static final ThreadLocal<Route> FORCED_ROUTE = new ThreadLocal<>();
+
+    private DataSourceRouting() {
+    }
+
+    /**
+     * Runs an action with all its connections acquired from the given route, whatever the transaction type.
+     *
+     * @param route The route to use.
+     * @param action The action to run.
+     * @param <T> Type of the result.
+     * @return The result of the action.
+     */
+    public static <T> T on(Route route, Supplier<T> action) {
+        Route previous = FORCED_ROUTE.get();
+        FORCED_ROUTE.set(route);
+        try {
+            return action.get();
+        } finally {
+            // Restore the outer hint, so that nested calls do not leak their route
+            if (previous == null) {
+                FORCED_ROUTE.remove();
+            } else {
+                FORCED_ROUTE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return The route forced for the current thread, or null when the default rules apply.
+     */
+    public static Route forcedRoute() {
+        return FORCED_ROUTE.get();
+    }
+}
@@ -0,0 +1,80 @@
+package com.pizzaparty.config;
+
+import com.github.benmanes.caffeine.jcache.configuration.CaffeineConfiguration;
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.pizzaparty.entity.Order;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.time.Duration;
+import java.util.OptionalLong;
+
+/**
+ * Configuration of the Hibernate second-level cache, backed by bounded local Caffeine caches (JCache).
+ * <p>
+ * The caches are local to each node: invalidations are not propagated to the other nodes, so every region
+ * except the update timestamps expires after a short time, which bounds how stale a read can be.
+ * Writes are always safe: orders are versioned, so an update based on a stale cached order fails
+ * with an optimistic locking error instead of overwriting a newer change.
+ * The cache statistics are exposed as hibernate.* metrics by the Spring Boot auto-configuration.
+ */
+@Configuration
+public class HibernateCacheConfig {
+
+    /**
+     * Creates the regions of the second-level cache and hands their manager to Hibernate.
+     *
+     * @param maxEntries Maximum number of entries of each region.
+     * @param entityTtl Time after which a cached order or order code is read again from the database.
+     * @param queryTtl Time after which a cached query result is discarded.
+     * @return The customizer registering the cache manager.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer secondLevelCacheCustomizer(
+            @Value("${pizzaparty.cache.max-entries:50000}") long maxEntries,
+            @Value("${pizzaparty.cache.entity-ttl:5s}") Duration entityTtl,
+            @Value("${pizzaparty.cache.query-ttl:2s}") Duration queryTtl) {
+        CacheManager cacheManager = createCacheManager(maxEntries, entityTtl, queryTtl);
+        return properties -> properties.put(ConfigSettings.CACHE_MANAGER, cacheManager);
+    }
+
+    /**
+     * Creates the cache manager holding every region used by Hibernate.
+     *
+     * @param maxEntries Maximum number of entries of each region.
+     * @param entityTtl Expiration of the order entity and natural-id regions.
+     * @param queryTtl Expiration of the query results region.
+     * @return The cache manager.
+     */
+    public static CacheManager createCacheManager(long maxEntries, Duration entityTtl, Duration queryTtl) {
+        CacheManager cacheManager = Caching.getCachingProvider(CaffeineCachingProvider.class.getName()).getCacheManager();
+        createRegion(cacheManager, Order.CACHE_REGION, maxEntries, entityTtl);
+        createRegion(cacheManager, Order.CACHE_REGION + "##NaturalId", maxEntries, entityTtl);
+        createRegion(cacheManager, RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, maxEntries, queryTtl);
+        // Hibernate requires the update timestamps to outlive every query result, so they never expire
+        createRegion(cacheManager, RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME, maxEntries, null);
+        return cacheManager;
+    }
+
+    private static void createRegion(CacheManager cacheManager, String name, long maxEntries, Duration ttl) {
+        // getCache(name) would look the region up in the external configuration, where "##" is not a valid path
+        for (String existing : cacheManager.getCacheNames()) {
+            if (existing.equals(name)) {
+                return; // Already created by a previous context in the same JVM (e.g. tests)
+            }
+        }
+        CaffeineConfiguration<Object, Object> configuration = new CaffeineConfiguration<>();
+        configuration.setMaximumSize(OptionalLong.of(maxEntries));
+        if (ttl != null) {
+            configuration.setExpireAfterWrite(OptionalLong.of(ttl.toNanos()));
+        }
+        configuration.setStatisticsEnabled(true);
+        cacheManager.createCache(name, configuration);
+    }
+}
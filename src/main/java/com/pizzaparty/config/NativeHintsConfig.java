@@ -0,0 +1,65 @@
+package com.pizzaparty.config;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.entity.IdempotencyRecord;
+import com.pizzaparty.entity.Order;
+import com.pizzaparty.entity.OrderCodeSequence;
+import com.pizzaparty.entity.OrderDailyStats;
+import net.ttddyy.dsproxy.proxy.ProxyJdbcObject;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.security.access.expression.SecurityExpressionRoot;
+import org.springframework.security.access.prepost.PreAuthorize;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Reflection, resource and proxy hints needed by the AOT-processed build and the native image
+ * (Maven profiles aot-cds and native) for what Spring cannot infer on its own.
+ * The hints are ignored when the application runs on a regular JVM.
+ */
+@Configuration
+@ImportRuntimeHints(NativeHintsConfig.PizzapartyRuntimeHints.class)
+// OrderDTO is serialized by PendingOrdersSnapshot into a byte[] body, so Spring MVC never sees it as a response type
+@RegisterReflectionForBinding(OrderDTO.class)
+public class NativeHintsConfig {
+
+    public static class PizzapartyRuntimeHints implements RuntimeHintsRegistrar {
+
+        @Override
+        public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+            // Entities: Lombok generates their constructors and accessors at compile time,
+            // Hibernate instantiates them and reads their fields reflectively
+            for (Class<?> entity : new Class<?>[]{Order.class, IdempotencyRecord.class, IdempotencyRecord.Key.class,
+                    OrderDailyStats.class, OrderDailyStats.Key.class, OrderCodeSequence.class}) {
+                hints.reflection().registerType(entity, MemberCategory.INVOKE_DECLARED_CONSTRUCTORS,
+                        MemberCategory.DECLARED_FIELDS, MemberCategory.INVOKE_PUBLIC_METHODS);
+            }
+
+            // Hibernate second-level cache: the JCache provider is looked up by class name (see HibernateCacheConfig)
+            // and reads its defaults from reference.conf
+            hints.reflection().registerType(CaffeineCachingProvider.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+            hints.resources().registerPattern("META-INF/services/javax.cache.spi.CachingProvider");
+            hints.resources().registerPattern("reference.conf");
+
+            // @PreAuthorize: the annotation is read at runtime and its SpEL expressions (hasRole, hasAnyRole)
+            // are invoked reflectively on the security expression root
+            hints.reflection().registerType(PreAuthorize.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+            hints.proxies().registerJdkProxy(PreAuthorize.class);
+            hints.reflection().registerType(SecurityExpressionRoot.class, MemberCategory.INVOKE_PUBLIC_METHODS);
+
+            // Statement inspection (see SqlLoggingConfig): datasource-proxy wraps the JDBC objects in JDK proxies
+            for (Class<?> jdbcType : new Class<?>[]{Connection.class, Statement.class, PreparedStatement.class, CallableStatement.class}) {
+                hints.proxies().registerJdkProxy(ProxyJdbcObject.class, jdbcType);
+            }
+        }
+    }
+}
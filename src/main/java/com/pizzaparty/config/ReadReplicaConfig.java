@@ -0,0 +1,78 @@
+package com.pizzaparty.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Read/write split between the primary database and a replica.
+ * Active only when "pizzaparty.datasource.replica.url" is set: the primary is configured as usual
+ * through "spring.datasource", the replica through "pizzaparty.datasource.replica" (same keys),
+ * and the application uses a routing DataSource that sends read-only transactions to the replica.
+ */
+@Configuration
+@ConditionalOnProperty(name = "pizzaparty.datasource.replica.url")
+public class ReadReplicaConfig {
+
+    /**
+     * Connection pool of the primary database, built from the "spring.datasource" properties.
+     * Not an autowire candidate: the application only sees the routing DataSource.
+     */
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    /**
+     * Connection settings of the replica.
+     * Not an autowire candidate, so that it does not clash with the "spring.datasource" properties.
+     */
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("pizzaparty.datasource.replica")
+    public DataSourceProperties replicaDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    /**
+     * Connection pool of the replica, built from the "pizzaparty.datasource.replica" properties.
+     */
+    @Bean(autowireCandidate = false)
+    @ConfigurationProperties("pizzaparty.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource() {
+        HikariDataSource dataSource = replicaDataSourceProperties().initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .build();
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true); // Fail fast if a write is ever routed to the replica
+        return dataSource;
+    }
+
+    /**
+     * DataSource used by the application, routing each transaction to the primary or to the replica.
+     *
+     * @param properties The "spring.datasource" properties of the primary.
+     * @return The routing DataSource, behind a lazy proxy so that the route is chosen at the first statement.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties) {
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource();
+        routingDataSource.setTargetDataSources(Map.of(
+                DataSourceRouting.Route.PRIMARY, primaryDataSource(properties),
+                DataSourceRouting.Route.REPLICA, replicaDataSource()));
+        routingDataSource.setDefaultTargetDataSource(primaryDataSource(properties));
+        routingDataSource.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routingDataSource);
+    }
+}
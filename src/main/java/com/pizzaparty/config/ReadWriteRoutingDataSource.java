@@ -0,0 +1,23 @@
+package com.pizzaparty.config;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * DataSource sending read-only transactions to the replica and everything else to the primary.
+ * It must be wrapped in a LazyConnectionDataSourceProxy, so that the physical connection is chosen
+ * after the transaction has been flagged as read-only.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        DataSourceRouting.Route forced = DataSourceRouting.forcedRoute();
+        if (forced != null) {
+            return forced; // Explicit hint, e.g. read-your-writes fallback to the primary
+        }
+        return TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                ? DataSourceRouting.Route.REPLICA
+                : DataSourceRouting.Route.PRIMARY;
+    }
+}
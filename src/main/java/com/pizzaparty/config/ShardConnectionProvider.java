@@ -0,0 +1,60 @@
+package com.pizzaparty.config;
+
+import org.hibernate.engine.jdbc.connections.spi.MultiTenantConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Hibernate connection provider opening the connections of each session on the shard of its store.
+ * The store is the Hibernate tenant identifier (see {@link StoreTenantResolver}), which also keeps apart
+ * in the second-level cache the orders of different shards that have the same ID.
+ */
+public class ShardConnectionProvider implements MultiTenantConnectionProvider<String> {
+
+    private final StoreRegistry storeRegistry;
+
+    public ShardConnectionProvider(StoreRegistry storeRegistry) {
+        this.storeRegistry = storeRegistry;
+    }
+
+    // Used by Hibernate outside of any session, e.g. to read the database metadata at startup
+    @Override
+    public Connection getAnyConnection() throws SQLException {
+        return storeRegistry.getMainDataSource().getConnection();
+    }
+
+    @Override
+    public void releaseAnyConnection(Connection connection) throws SQLException {
+        connection.close();
+    }
+
+    @Override
+    public Connection getConnection(String store) throws SQLException {
+        return storeRegistry.getDataSource(store).getConnection();
+    }
+
+    @Override
+    public void releaseConnection(String store, Connection connection) throws SQLException {
+        connection.close();
+    }
+
+    @Override
+    public boolean supportsAggressiveRelease() {
+        return false;
+    }
+
+    @Override
+    public boolean isUnwrappableAs(Class<?> unwrapType) {
+        return unwrapType.isInstance(this);
+    }
+
+    @Override
+    public <T> T unwrap(Class<T> unwrapType) {
+        if (unwrapType.isInstance(this)) {
+            return unwrapType.cast(this);
+        }
+        throw new UnknownUnwrapTypeException(unwrapType);
+    }
+}
@@ -0,0 +1,43 @@
+package com.pizzaparty.config;
+
+import lombok.RequiredArgsConstructor;
+import org.hibernate.cfg.MultiTenancySettings;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Configuration of the multi-store deployment.
+ * Every order belongs to a store; the requests under /stores/{store} work on the orders of that store,
+ * the other ones on the main store. The orders of each store are kept on the shard configured for it
+ * (see {@link StoreRegistry}): Hibernate opens the connections of a transaction on the shard of the store
+ * bound when the transaction starts.
+ */
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+@RequiredArgsConstructor
+public class ShardingConfig implements WebMvcConfigurer {
+
+    private final StoreRegistry storeRegistry;
+
+    /**
+     * Makes the store the Hibernate tenant and routes the connections of each tenant to its shard.
+     *
+     * @return The customizer registering the connection provider and the tenant resolver.
+     */
+    @Bean
+    public HibernatePropertiesCustomizer multiTenancyCustomizer() {
+        return properties -> {
+            properties.put(MultiTenancySettings.MULTI_TENANT_CONNECTION_PROVIDER, new ShardConnectionProvider(storeRegistry));
+            properties.put(MultiTenancySettings.MULTI_TENANT_IDENTIFIER_RESOLVER, new StoreTenantResolver());
+        };
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new StoreInterceptor(storeRegistry)).addPathPatterns("/stores/**");
+    }
+}
@@ -0,0 +1,46 @@
+package com.pizzaparty.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stores and shards, configured under "pizzaparty.sharding" (see application.yml).
+ * A shard is a database, or a schema of a database, holding the orders of one or more stores.
+ */
+@Data
+@ConfigurationProperties("pizzaparty.sharding")
+public class ShardingProperties {
+
+    private Map<String, Shard> shards = new LinkedHashMap<>(); // Shards by name, besides the main one (the application DataSource)
+
+    private Map<String, Store> stores = new LinkedHashMap<>(); // Stores by name; the main store exists even if not listed
+
+    /**
+     * Connection settings of a shard.
+     */
+    @Data
+    public static class Shard {
+
+        private String url; // JDBC URL of the database of the shard, e.g. jdbc:postgresql://host:5432/pizza_party_south
+
+        private String username; // Database user
+
+        private String password; // Password of the user
+
+        private int maximumPoolSize = 10; // Connection pool size of the shard
+    }
+
+    /**
+     * Settings of a store.
+     */
+    @Data
+    public static class Store {
+
+        private String shard = StoreRegistry.MAIN_SHARD; // Name of the shard holding the orders of the store
+
+        private int preparationLimit = 1; // Maximum number of orders of the store in preparation at the same time
+    }
+}
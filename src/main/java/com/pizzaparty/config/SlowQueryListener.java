@@ -0,0 +1,113 @@
+package com.pizzaparty.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.ttddyy.dsproxy.ExecutionInfo;
+import net.ttddyy.dsproxy.QueryInfo;
+import net.ttddyy.dsproxy.listener.QueryExecutionListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Records the latency of every SQL statement and logs only the slow ones and a random sample of the others.
+ * Replaces jpa.show-sql, which printed every statement synchronously on the request thread.
+ * <p>
+ * Latencies go to the pizzaparty.db.queries timer (with percentile histogram), tagged with the statement
+ * kind and table (e.g. "select order"); statements are logged through the com.pizzaparty.sql logger.
+ */
+public class SlowQueryListener implements QueryExecutionListener {
+
+    private static final Logger logger = LoggerFactory.getLogger("com.pizzaparty.sql");
+
+    // First keyword of the statement and the table following FROM or INTO, or directly the keyword (UPDATE)
+    private static final Pattern STATEMENT = Pattern.compile(
+            "^\\s*(\\w+)(?:.*?\\b(?:from|into)\\s+|\\s+)(?:\\w+\\.)?\"?([a-z_]\\w*)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    private final MeterRegistry registry;
+
+    private final long slowThresholdNanos;
+
+    private final double sampleRate;
+
+    private final Counter slowLogged;
+
+    private final Counter sampledLogged;
+
+    // Timer of each SQL string; Hibernate uses a small fixed set of parameterized statements
+    private final Cache<String, Timer> timers = Caffeine.newBuilder()
+            .maximumSize(1_000) // Bound the memory if statements with inlined values ever show up
+            .build();
+
+    /**
+     * @param registry The registry of the latency histograms.
+     * @param slowThreshold Statements at least this slow are always logged.
+     * @param sampleRate Fraction (0 to 1) of the other statements that is logged.
+     */
+    public SlowQueryListener(MeterRegistry registry, Duration slowThreshold, double sampleRate) {
+        this.registry = registry;
+        this.slowThresholdNanos = slowThreshold.toNanos();
+        this.sampleRate = sampleRate;
+        this.slowLogged = Counter.builder("pizzaparty.db.queries.logged").tag("reason", "slow").register(registry);
+        this.sampledLogged = Counter.builder("pizzaparty.db.queries.logged").tag("reason", "sampled").register(registry);
+    }
+
+    @Override
+    public void beforeQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        // Nothing to do: datasource-proxy measures the elapsed time
+    }
+
+    @Override
+    public void afterQuery(ExecutionInfo execInfo, List<QueryInfo> queryInfoList) {
+        long elapsedNanos = execInfo.getElapsedTime(); // Nanoseconds, see SqlLoggingConfig
+        for (QueryInfo queryInfo : queryInfoList) {
+            timers.get(queryInfo.getQuery(), this::timer).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        }
+
+        if (elapsedNanos >= slowThresholdNanos) {
+            slowLogged.increment();
+            logger.warn("Slow query ({} ms, success: {}): {}", TimeUnit.NANOSECONDS.toMillis(elapsedNanos), execInfo.isSuccess(), queries(queryInfoList));
+        } else if (sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate) {
+            sampledLogged.increment();
+            logger.info("Sampled query ({} ms, success: {}): {}", TimeUnit.NANOSECONDS.toMillis(elapsedNanos), execInfo.isSuccess(), queries(queryInfoList));
+        }
+    }
+
+    private Timer timer(String sql) {
+        return Timer.builder("pizzaparty.db.queries")
+                .description("Execution time of the SQL statements")
+                .tag("statement", statementName(sql))
+                .publishPercentileHistogram()
+                .register(registry);
+    }
+
+    /**
+     * Names a statement by its kind and its main table, e.g. "select order" or "insert idempotency_record".
+     *
+     * @param sql The SQL statement.
+     * @return The name of the statement, used as a low-cardinality metric tag.
+     */
+    public static String statementName(String sql) {
+        Matcher matcher = STATEMENT.matcher(sql);
+        if (!matcher.find()) {
+            return "other";
+        }
+        return matcher.group(1).toLowerCase(Locale.ROOT) + " " + matcher.group(2).toLowerCase(Locale.ROOT);
+    }
+
+    private static String queries(List<QueryInfo> queryInfoList) {
+        return queryInfoList.size() == 1
+                ? queryInfoList.get(0).getQuery()
+                : queryInfoList.stream().map(QueryInfo::getQuery).toList().toString();
+    }
+}
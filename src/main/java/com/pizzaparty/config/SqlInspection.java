@@ -0,0 +1,37 @@
+package com.pizzaparty.config;
+
+import net.ttddyy.dsproxy.proxy.NanoTimeStopwatchFactory;
+import net.ttddyy.dsproxy.proxy.ProxyConfig;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps DataSources in the statement inspection proxy (see {@link SqlLoggingConfig}).
+ * All the wrapped DataSources share the same {@link SlowQueryListener}, so the statements of every shard
+ * end up in the same latency histograms and slow query log.
+ */
+public class SqlInspection {
+
+    private final SlowQueryListener listener;
+
+    public SqlInspection(SlowQueryListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @param name The name of the DataSource, e.g. the name of its bean or pool.
+     * @param dataSource The DataSource to inspect.
+     * @return A DataSource timing every statement run through the given one.
+     */
+    public DataSource wrap(String name, DataSource dataSource) {
+        ProxyConfig proxyConfig = ProxyConfig.Builder.create()
+                .dataSourceName(name)
+                .queryListener(listener)
+                .stopwatchFactory(new NanoTimeStopwatchFactory()) // Elapsed times in nanoseconds instead of milliseconds
+                .build();
+        ProxyDataSource proxyDataSource = new ProxyDataSource(dataSource);
+        proxyDataSource.setProxyConfig(proxyConfig);
+        return proxyDataSource;
+    }
+}
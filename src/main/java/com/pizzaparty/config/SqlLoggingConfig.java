@@ -0,0 +1,57 @@
+package com.pizzaparty.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Configuration of the SQL statement inspection layer.
+ * The DataSource used by JPA is wrapped in a datasource-proxy that times every statement and hands it
+ * to a {@link SlowQueryListener}. Only the DataSource bean named "dataSource" is wrapped: with a read replica
+ * it is the routing DataSource, so the statements are counted once whichever database runs them.
+ * The pools of the other shards are wrapped by {@link StoreRegistry} through the same {@link SqlInspection}.
+ */
+@Configuration
+public class SqlLoggingConfig {
+
+    /**
+     * Creates the statement inspection shared by all the DataSources.
+     *
+     * @param registry The registry of the latency histograms.
+     * @param slowThreshold Statements at least this slow are always logged.
+     * @param sampleRate Fraction (0 to 1) of the other statements that is logged.
+     * @return The statement inspection.
+     */
+    @Bean
+    public static SqlInspection sqlInspection(MeterRegistry registry,
+                                              @Value("${pizzaparty.sql.slow-threshold:200ms}") Duration slowThreshold,
+                                              @Value("${pizzaparty.sql.sample-rate:0.001}") double sampleRate) {
+        return new SqlInspection(new SlowQueryListener(registry, slowThreshold, sampleRate));
+    }
+
+    /**
+     * Wraps the application DataSource in the statement inspection proxy.
+     * Static, like every BeanPostProcessor declared in a configuration class, so that it is created early.
+     *
+     * @param sqlInspection Provides the statement inspection, created when the DataSource is.
+     * @return The post processor wrapping the DataSource.
+     */
+    @Bean
+    public static BeanPostProcessor slowQueryDataSourcePostProcessor(ObjectProvider<SqlInspection> sqlInspection) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource dataSource) || !"dataSource".equals(beanName)) {
+                    return bean;
+                }
+                return sqlInspection.getObject().wrap(beanName, dataSource);
+            }
+        };
+    }
+}
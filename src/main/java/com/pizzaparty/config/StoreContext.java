@@ -0,0 +1,65 @@
+package com.pizzaparty.config;
+
+import java.util.function.Supplier;
+
+/**
+ * Thread-bound store (pizzeria) on whose orders the current work is done.
+ * It is bound by {@link StoreInterceptor} for the requests under /stores/{store}, and selects both the rows
+ * (every order belongs to a store) and the shard holding them (see {@link StoreRegistry}).
+ * Work done without a bound store applies to the main store.
+ */
+public final class StoreContext {
+
+    /**
+     * Store of the requests without a store in their path, and of the orders created before stores existed.
+     */
+    public static final String DEFAULT_STORE = "main";
+
+    // Store bound to the current thread, null when the default store applies
+    private static final ThreadLocal<String> CURRENT_STORE = new ThreadLocal<>();
+
+    private StoreContext() {
+    }
+
+    /**
+     * Runs an action on the orders of a store.
+     * The store must be bound before a transaction starts: the shard of a transaction is chosen when it begins.
+     *
+     * @param store The store.
+     * @param action The action to run.
+     * @param <T> Type of the result.
+     * @return The result of the action.
+     */
+    public static <T> T on(String store, Supplier<T> action) {
+        String previous = CURRENT_STORE.get();
+        CURRENT_STORE.set(store);
+        try {
+            return action.get();
+        } finally {
+            // Restore the outer store, so that nested calls do not leak their store
+            if (previous == null) {
+                CURRENT_STORE.remove();
+            } else {
+                CURRENT_STORE.set(previous);
+            }
+        }
+    }
+
+    /**
+     * @return The store bound to the current thread, or the default store.
+     */
+    public static String current() {
+        String store = CURRENT_STORE.get();
+        return store != null ? store : DEFAULT_STORE;
+    }
+
+    // Binds a store for a whole request, see StoreInterceptor
+    static void bind(String store) {
+        CURRENT_STORE.set(store);
+    }
+
+    // Unbinds the store at the end of a request, see StoreInterceptor
+    static void unbind() {
+        CURRENT_STORE.remove();
+    }
+}
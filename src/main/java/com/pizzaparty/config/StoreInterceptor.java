@@ -0,0 +1,51 @@
+package com.pizzaparty.config;
+
+import com.pizzaparty.exceptions.StoreNotFoundException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Map;
+
+/**
+ * Binds the store of the requests under /stores/{store} to the request thread (see {@link StoreContext}).
+ * Requests without a store in their path work on the default store.
+ */
+public class StoreInterceptor implements AsyncHandlerInterceptor {
+
+    // Name of the path variable holding the store
+    private static final String STORE_VARIABLE = "store";
+
+    private final StoreRegistry storeRegistry;
+
+    public StoreInterceptor(StoreRegistry storeRegistry) {
+        this.storeRegistry = storeRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        @SuppressWarnings("unchecked")
+        Map<String, String> variables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String store = variables != null ? variables.get(STORE_VARIABLE) : null;
+        if (store == null) {
+            return true;
+        }
+        if (!storeRegistry.exists(store)) {
+            throw new StoreNotFoundException("Store " + store + " not found");
+        }
+        StoreContext.bind(store);
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        StoreContext.unbind();
+    }
+
+    // The request continues on another thread (e.g. GET /orders/export), which binds the store itself
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        StoreContext.unbind();
+    }
+}
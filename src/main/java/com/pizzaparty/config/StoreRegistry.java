@@ -0,0 +1,144 @@
+package com.pizzaparty.config;
+
+import com.pizzaparty.exceptions.StoreNotFoundException;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Routing table of the stores: the shard holding the orders of each store and its preparation limit.
+ * The main shard is the application DataSource (with its replica, if any); every other shard has its own
+ * connection pool, so that a busy store cannot exhaust the connections of the stores of another shard.
+ * The statements of these pools are inspected like those of the application DataSource (see {@link SqlLoggingConfig}).
+ */
+@Component
+public class StoreRegistry implements DisposableBean {
+
+    /**
+     * Name of the shard backed by the application DataSource.
+     */
+    public static final String MAIN_SHARD = "main";
+
+    // Store names are used in URLs and inlined in COPY statements (see OrderExportServiceImpl), so they are restricted
+    private static final Pattern STORE_NAME = Pattern.compile("[a-z0-9][a-z0-9_-]{0,49}");
+
+    private final DataSource mainDataSource;
+
+    // Settings of each store, by name
+    private final Map<String, StoreRoute> stores = new HashMap<>();
+
+    // Connection pools of the shards other than the main one, closed with the application
+    private final List<HikariDataSource> shardPools = new ArrayList<>();
+
+    private final SqlInspection sqlInspection;
+
+    /**
+     * @param properties The stores and shards configured under "pizzaparty.sharding".
+     * @param mainDataSource The application DataSource, backing the main shard.
+     * @param sqlInspection Wraps the pools of the other shards in the statement inspection proxy.
+     * @throws IllegalStateException If a store name or shard reference is not valid.
+     */
+    public StoreRegistry(ShardingProperties properties, DataSource mainDataSource, SqlInspection sqlInspection) {
+        this.mainDataSource = mainDataSource;
+        this.sqlInspection = sqlInspection;
+        Map<String, DataSource> shards = new HashMap<>();
+        shards.put(MAIN_SHARD, mainDataSource);
+        properties.getShards().forEach((name, shard) -> {
+            if (MAIN_SHARD.equals(name)) {
+                throw new IllegalStateException("The shard '" + MAIN_SHARD + "' is the application DataSource and cannot be configured");
+            }
+            shards.put(name, createPool(name, shard));
+        });
+
+        stores.put(StoreContext.DEFAULT_STORE, new StoreRoute(mainDataSource, 1)); // Unless configured otherwise below
+        properties.getStores().forEach((name, store) -> {
+            if (!STORE_NAME.matcher(name).matches()) {
+                throw new IllegalStateException("Invalid store name '" + name + "': use lowercase letters, digits, '-' and '_'");
+            }
+            DataSource dataSource = shards.get(store.getShard());
+            if (dataSource == null) {
+                throw new IllegalStateException("Store '" + name + "' refers to the unknown shard '" + store.getShard() + "'");
+            }
+            if (store.getPreparationLimit() < 1) {
+                throw new IllegalStateException("The preparation limit of store '" + name + "' must be at least 1");
+            }
+            stores.put(name, new StoreRoute(dataSource, store.getPreparationLimit()));
+        });
+    }
+
+    /**
+     * @param store The name of a store.
+     * @return true if the store is configured.
+     */
+    public boolean exists(String store) {
+        return stores.containsKey(store);
+    }
+
+    /**
+     * @return The names of all the stores.
+     */
+    public Set<String> getStores() {
+        return new LinkedHashSet<>(stores.keySet());
+    }
+
+    /**
+     * @param store The name of a store.
+     * @return The DataSource of the shard holding the orders of the store.
+     * @throws StoreNotFoundException If the store is not configured.
+     */
+    public DataSource getDataSource(String store) {
+        return route(store).dataSource();
+    }
+
+    /**
+     * @return The application DataSource, backing the main shard.
+     */
+    public DataSource getMainDataSource() {
+        return mainDataSource;
+    }
+
+    /**
+     * @param store The name of a store.
+     * @return The maximum number of orders of the store in preparation at the same time.
+     * @throws StoreNotFoundException If the store is not configured.
+     */
+    public int getPreparationLimit(String store) {
+        return route(store).preparationLimit();
+    }
+
+    @Override
+    public void destroy() {
+        shardPools.forEach(HikariDataSource::close);
+    }
+
+    private StoreRoute route(String store) {
+        StoreRoute route = stores.get(store);
+        if (route == null) {
+            throw new StoreNotFoundException("Store " + store + " not found");
+        }
+        return route;
+    }
+
+    private DataSource createPool(String name, ShardingProperties.Shard shard) {
+        HikariDataSource dataSource = new HikariDataSource();
+        dataSource.setPoolName("shard-" + name);
+        dataSource.setJdbcUrl(shard.getUrl());
+        dataSource.setUsername(shard.getUsername());
+        dataSource.setPassword(shard.getPassword());
+        dataSource.setMaximumPoolSize(shard.getMaximumPoolSize());
+        shardPools.add(dataSource);
+        return sqlInspection.wrap(dataSource.getPoolName(), dataSource); // Connections are opened at the first use
+    }
+
+    private record StoreRoute(DataSource dataSource, int preparationLimit) {
+    }
+}
@@ -0,0 +1,20 @@
+package com.pizzaparty.config;
+
+import org.hibernate.context.spi.CurrentTenantIdentifierResolver;
+
+/**
+ * Resolves the Hibernate tenant of a new session: the store bound to the current thread (see {@link StoreContext}).
+ */
+public class StoreTenantResolver implements CurrentTenantIdentifierResolver<String> {
+
+    @Override
+    public String resolveCurrentTenantIdentifier() {
+        return StoreContext.current();
+    }
+
+    // Sessions are bound to Spring transactions, which never outlive the store they were started for
+    @Override
+    public boolean validateExistingCurrentSessions() {
+        return false;
+    }
+}
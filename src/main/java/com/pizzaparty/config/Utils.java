@@ -46,4 +46,36 @@ public class Utils {
 
         return PREFIX + "-" + currentDate + "-" + counter;
     }
+
+    /**
+     * Generates the order code of a day with a given counter (e.g. COD-21032025-0001).
+     *
+     * @param day The day of the order.
+     * @param counter The order counter of the day, starting from 1.
+     * @return The order code.
+     */
+    public static String generateOrderCode(LocalDate day, int counter) {
+        return PREFIX + "-" + day.format(DATE_FORMAT) + "-" + String.format("%04d", counter);
+    }
+
+    /**
+     * Extracts the date of creation of an order from its code (e.g. 21/03/2025 from COD-21032025-0001).
+     *
+     * @param orderCode The order code.
+     * @return The date contained in the code.
+     */
+    public static LocalDate parseOrderDate(String orderCode) {
+        int start = PREFIX.length() + 1;  // Skip the prefix and the dash
+        return LocalDate.parse(orderCode.substring(start, start + 8), DATE_FORMAT);
+    }
+
+    /**
+     * Formats a date like in the order codes (ddMMyyyy).
+     *
+     * @param date The date to format.
+     * @return The formatted date.
+     */
+    public static String formatOrderDate(LocalDate date) {
+        return date.format(DATE_FORMAT);
+    }
 }
@@ -0,0 +1,65 @@
+package com.pizzaparty.config;
+
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+
+/**
+ * Wire formats in which orders can be sent to clients.
+ * Used where responses are pre-serialized and Spring MVC content negotiation cannot pick the converter.
+ */
+public enum WireFormat {
+
+    JSON(MediaType.APPLICATION_JSON), // Default format
+    CBOR(MediaType.APPLICATION_CBOR); // Compact binary format, see CborConfig
+
+    private final MediaType mediaType;
+
+    WireFormat(MediaType mediaType) {
+        this.mediaType = mediaType;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    /**
+     * Builds the strong ETag of a resource sent in this format. The representations of a resource in each format
+     * differ, so they must not share a strong ETag.
+     *
+     * @param tag The tag identifying the version of the resource.
+     * @return The strong ETag of the resource in this format.
+     */
+    public String toEtag(Object tag) {
+        return "\"" + tag + (this == CBOR ? "-cbor" : "") + "\"";
+    }
+
+    /**
+     * Chooses the format preferred by the client according to its Accept header.
+     * JSON is chosen when the header is missing, invalid, or accepts both formats with the same quality
+     * through a wildcard.
+     *
+     * @param accept The value of the Accept header, possibly null.
+     * @return The format to use for the response.
+     */
+    public static WireFormat negotiate(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return JSON;
+        }
+        try {
+            WireFormat chosen = JSON;
+            double bestQuality = -1;
+            for (MediaType accepted : MediaType.parseMediaTypes(accept)) {
+                for (WireFormat format : values()) {
+                    // Strictly greater: on ties the first accepted type wins, and JSON wins over wildcards
+                    if (accepted.includes(format.mediaType) && accepted.getQualityValue() > bestQuality) {
+                        chosen = format;
+                        bestQuality = accepted.getQualityValue();
+                    }
+                }
+            }
+            return chosen;
+        } catch (InvalidMediaTypeException ex) {
+            return JSON;
+        }
+    }
+}
@@ -1,51 +1,111 @@
 package com.pizzaparty.controller;
 
+import com.pizzaparty.config.WireFormat;
 import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.dto.OrderSearchResultDTO;
+import com.pizzaparty.service.IdempotencyService;
 import com.pizzaparty.service.OrderService;
+import com.pizzaparty.service.PendingOrdersSnapshot;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.List;
+import java.security.Principal;
+import java.util.Optional;
 
 /**
  * REST Controller that handles HTTP requests related to orders.
  * This class provides endpoints to create, update, and retrieve orders.
+ * Every endpoint is also available under /stores/{store}, to work on the orders of another store.
  */
 @RestController
-@RequestMapping("/orders")
+@RequestMapping({"/orders", "/stores/{store}/orders"}) // Default store, or the store in the path
 @RequiredArgsConstructor
 public class OrderController {
 
+    // Owner of the idempotency keys sent without authentication: they are then only scoped by store
+    private static final String ANONYMOUS = "anonymous";
+
     private final OrderService orderService;
 
+    private final IdempotencyService idempotencyService;
+
+    private final PendingOrdersSnapshot pendingOrdersSnapshot;
+
     /**
      * Creates a new order.
      * This endpoint receives the order description and uses it to create a new order.
+     * When the client sends an Idempotency-Key header, retries with the same key return the original order.
+     * A key is only replayed to the user who sent it first, or to any unauthenticated client if it was sent without authentication.
      *
+     * @param principal The authenticated user, or null if the request is not authenticated
+     * @param idempotencyKey Optional key identifying the creation request across client retries
      * @param description Description of the order to be created
      * @return OrderDTO representing the newly created order
      */
     @PostMapping // Endpoint to create a new order
     @PreAuthorize("hasRole('CUSTOMER')")
-    public ResponseEntity<OrderDTO> createOrder(@RequestParam String description) {
-        // Calls the service to create the order and returns the created order DTO
-        OrderDTO orderDTO = orderService.createOrder(description);
+    public ResponseEntity<OrderDTO> createOrder(Principal principal,
+                                                @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+                                                @RequestParam String description) {
+        // Calls the service to create the order (at most once per idempotency key) and returns the created order DTO
+        OrderDTO orderDTO = idempotencyKey == null
+                ? orderService.createOrder(description)
+                : idempotencyService.createOrder(principal != null ? principal.getName() : ANONYMOUS, idempotencyKey, description);
         return ResponseEntity.ok(orderDTO); // Responds with HTTP status 200 and the order DTO
     }
 
     /**
      * Retrieves a list of orders that are still waiting to be processed.
+     * The list is written from a pre-serialized snapshot, rebuilt only after an order change.
+     * Clients sending the ETag of the current snapshot in If-None-Match get a 304 without a body.
+     * The list is sent in JSON, or in CBOR when the client prefers application/cbor.
      *
-     * @return List of pending orders
+     * @param accept The Accept header of the request, used to choose the wire format
+     * @param request The current request, used to evaluate the If-None-Match header
+     * @return Serialized list of pending orders
      */
-    @GetMapping("/waiting") // Endpoint to retrieve pending orders
+    @GetMapping(value = "/waiting", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE}) // Endpoint to retrieve pending orders
     @PreAuthorize("hasAnyRole('PIZZAIOLO', 'ADMIN')")
-    public ResponseEntity<List<OrderDTO>> getPendingOrders() {
-        // Calls the service to get the pending orders and returns the list
-        List<OrderDTO> orders = orderService.getPendingOrders();
-        return ResponseEntity.ok(orders); // Responds with HTTP status 200 and the list of orders
+    public ResponseEntity<byte[]> getPendingOrders(@RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                   WebRequest request) {
+        // Gets the current snapshot of the pending orders in the format preferred by the client
+        WireFormat format = WireFormat.negotiate(accept);
+        PendingOrdersSnapshot.Snapshot snapshot = pendingOrdersSnapshot.current();
+        String etag = snapshot.getEtag(format);
+        if (request.checkNotModified(etag)) {
+            return notModified(etag); // The client already has this version of the list
+        }
+        // Writes the bytes of the snapshot as they are
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType())
+                .eTag(etag) // Strong ETag identifying the version and format of the list
+                .varyBy(HttpHeaders.ACCEPT)
+                .body(snapshot.getBody(format)); // Responds with HTTP status 200 and the serialized list of orders
+    }
+
+    /**
+     * Searches the orders by the content of their description (e.g. "margherita senza glutine").
+     * Typos and partial words are tolerated; the results are ranked from the best to the worst match.
+     *
+     * @param text Searched text, in web search syntax (quoted phrases and -excluded words are supported)
+     * @param page Index of the page, starting from 0
+     * @param size Number of orders per page, at most 100
+     * @return Page of the matching orders
+     */
+    @GetMapping("/search") // Endpoint to search orders by description
+    @PreAuthorize("hasAnyRole('PIZZAIOLO', 'ADMIN')")
+    public ResponseEntity<OrderSearchResultDTO> searchOrders(@RequestParam("q") String text,
+                                                             @RequestParam(defaultValue = "0") int page,
+                                                             @RequestParam(defaultValue = "20") int size) {
+        // Calls the service to search the orders and returns the page of results
+        OrderSearchResultDTO result = orderService.searchOrders(text, page, size);
+        return ResponseEntity.ok(result); // Responds with HTTP status 200 and the page of results
     }
 
     /**
@@ -79,14 +139,37 @@ public class OrderController {
     /**
      * Retrieves a specific order based on its order code.
      *
+     * The version of the order is checked first: clients sending it in If-None-Match get a 304
+     * without the order being loaded.
+     * The order is sent in JSON, or in CBOR when the client prefers application/cbor; the ETag differs for each format.
+     *
      * @param orderCode Unique code identifying the order
+     * @param accept The Accept header of the request, used to choose the wire format
+     * @param request The current request, used to evaluate the If-None-Match header
      * @return OrderDTO representing the order corresponding to the provided code
      */
-    @GetMapping("/{orderCode}") // Endpoint to retrieve a specific order by code
+    @GetMapping(value = "/{orderCode}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE}) // Endpoint to retrieve a specific order by code
     @PreAuthorize("hasAnyRole('CUSTOMER', 'ADMIN')")
-    public ResponseEntity<OrderDTO> getOrder(@PathVariable String orderCode) {
+    public ResponseEntity<OrderDTO> getOrder(@PathVariable String orderCode,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                             WebRequest request) {
+        // Reads the version before the order, so that the ETag can never be newer than the body
+        WireFormat format = WireFormat.negotiate(accept);
+        Optional<String> etag = orderService.getOrderVersion(orderCode).map(format::toEtag);
+        if (etag.isPresent() && request.checkNotModified(etag.get())) {
+            return notModified(etag.get()); // The client already has this version of the order
+        }
         // Calls the service to retrieve the order by code and returns the DTO
         OrderDTO orderDTO = orderService.getOrderByCode(orderCode);
-        return ResponseEntity.ok(orderDTO); // Responds with HTTP status 200 and the order DTO
+        return ResponseEntity.ok()
+                .contentType(format.getMediaType()) // The format of the ETag
+                .eTag(etag.orElse(null)) // Strong ETag identifying the version and format of the order
+                .varyBy(HttpHeaders.ACCEPT) // The order can be sent in JSON or CBOR
+                .body(orderDTO); // Responds with HTTP status 200 and the order DTO
+    }
+
+    // Builds a 304 response carrying the ETag of the version the client already has
+    private static <T> ResponseEntity<T> notModified(String etag) {
+        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(etag).varyBy(HttpHeaders.ACCEPT).build();
     }
 }
@@ -0,0 +1,95 @@
+package com.pizzaparty.controller;
+
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.Utils;
+import com.pizzaparty.enumeration.ExportFormatEnum;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.service.OrderExportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+
+/**
+ * REST Controller that exports the orders in bulk, e.g. for the month-end reconciliation.
+ * The file is streamed in a chunked response while it is read from the database.
+ */
+@RestController
+@RequestMapping({"/orders/export", "/stores/{store}/orders/export"}) // Default store, or the store in the path
+@RequiredArgsConstructor
+public class OrderExportController {
+
+    private final OrderExportService orderExportService;
+
+    /**
+     * Exports the orders of a range of days, optionally with a given status.
+     * Save the response to a file, e.g. curl -o orders.csv.gz ".../orders/export?from=01032025&to=31032025&format=CSV_GZIP".
+     *
+     * @param from First day, in the ddMMyyyy format of the order codes (default: no lower bound)
+     * @param to Last day, in the ddMMyyyy format of the order codes (default: no upper bound)
+     * @param status Status of the exported orders (default: all the statuses)
+     * @param format Format of the file, CSV or CSV_GZIP (default: CSV)
+     * @return The file, written while the orders are read
+     */
+    @GetMapping // Endpoint to export the orders
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<StreamingResponseBody> exportOrders(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "ddMMyyyy") LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "ddMMyyyy") LocalDate to,
+            @RequestParam(required = false) OrderStatusEnum status,
+            @RequestParam(defaultValue = "CSV") ExportFormatEnum format) {
+        // Checked here, before the response is committed, so that the client gets a proper 400
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("The first day must not be after the last day");
+        }
+        // The body is written on another thread, which has to work on the store of the request too
+        String store = StoreContext.current();
+        StreamingResponseBody body = out -> {
+            try {
+                StoreContext.on(store, () -> {
+                    try {
+                        return orderExportService.exportOrders(format, from, to, status, out);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                });
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(format.getMediaType()))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(fileName(from, to, status, format))
+                        .build()
+                        .toString())
+                .body(body); // Written on an async thread, without Content-Length
+    }
+
+    // e.g. orders-01032025-31032025-READY.csv.gz
+    private static String fileName(LocalDate from, LocalDate to, OrderStatusEnum status, ExportFormatEnum format) {
+        StringBuilder name = new StringBuilder("orders");
+        if (from != null) {
+            name.append('-').append(Utils.formatOrderDate(from));
+        }
+        if (to != null) {
+            name.append('-').append(Utils.formatOrderDate(to));
+        }
+        if (status != null) {
+            name.append('-').append(status.name());
+        }
+        return name.append('.').append(format.getExtension()).toString();
+    }
+}
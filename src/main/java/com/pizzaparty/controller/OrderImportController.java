@@ -0,0 +1,44 @@
+package com.pizzaparty.controller;
+
+import com.pizzaparty.dto.OrderImportResultDTO;
+import com.pizzaparty.enumeration.ExportFormatEnum;
+import com.pizzaparty.service.OrderImportService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * REST Controller that imports orders in bulk, e.g. to migrate a store or to replay the orders of a day.
+ * The request body is streamed to the database while it is received.
+ */
+@RestController
+@RequestMapping({"/orders/import", "/stores/{store}/orders/import"}) // Default store, or the store in the path
+@RequiredArgsConstructor
+public class OrderImportController {
+
+    private final OrderImportService orderImportService;
+
+    /**
+     * Imports the orders of a file written by GET /orders/export, keeping their codes.
+     * e.g. curl --data-binary @orders.csv.gz -H "Content-Type: application/gzip" ".../orders/import?format=CSV_GZIP".
+     *
+     * @param format Format of the file, CSV or CSV_GZIP (default: CSV)
+     * @param body The content of the file
+     * @return The number of imported orders and of the orders skipped because their code already exists
+     * @throws IOException If the request body cannot be read
+     */
+    @PostMapping(consumes = {"text/csv", "application/gzip"}) // Endpoint to import orders
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<OrderImportResultDTO> importOrders(@RequestParam(defaultValue = "CSV") ExportFormatEnum format,
+                                                             InputStream body) throws IOException {
+        // Calls the service to import the orders and returns the counts
+        return ResponseEntity.ok(orderImportService.importOrders(format, body)); // Responds with HTTP status 200 and the counts
+    }
+}
@@ -0,0 +1,46 @@
+package com.pizzaparty.controller;
+
+import com.pizzaparty.dto.OrderDailyStatsDTO;
+import com.pizzaparty.service.OrderStatsService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * REST Controller that exposes the statistics of the orders.
+ * The statistics are read from the daily rollups and never computed from the orders.
+ */
+@RestController
+@RequestMapping({"/orders/stats", "/stores/{store}/orders/stats"}) // Default store, or the store in the path
+@RequiredArgsConstructor
+public class OrderStatsController {
+
+    private final OrderStatsService orderStatsService;
+
+    /**
+     * Retrieves the statistics of each day of a range: orders created, orders by current status
+     * and average preparation time.
+     *
+     * @param from First day, in the ddMMyyyy format of the order codes (default: 29 days before the last day)
+     * @param to Last day, in the ddMMyyyy format of the order codes (default: today)
+     * @return Statistics of the days of the range that have orders
+     */
+    @GetMapping // Endpoint to retrieve the daily statistics
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<List<OrderDailyStatsDTO>> getDailyStats(
+            @RequestParam(required = false) @DateTimeFormat(pattern = "ddMMyyyy") LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(pattern = "ddMMyyyy") LocalDate to) {
+        LocalDate lastDay = to != null ? to : LocalDate.now();
+        LocalDate firstDay = from != null ? from : lastDay.minusDays(29);
+        // Calls the service to read the rollups of the range and returns them
+        return ResponseEntity.ok(orderStatsService.getDailyStats(firstDay, lastDay)); // Responds with HTTP status 200 and the statistics
+    }
+}
@@ -0,0 +1,18 @@
+package com.pizzaparty.dto;
+
+import com.pizzaparty.enumeration.ErrorCodeEnum;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * DTO that represents the body of an error response.
+ * Clients should branch on the code, the message is only meant for humans.
+ */
+@Data
+@AllArgsConstructor
+public class ErrorResponseDTO {
+
+    private ErrorCodeEnum code; // Stable code identifying the error
+
+    private String message; // Human readable description of the error
+}
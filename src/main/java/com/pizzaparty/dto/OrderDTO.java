@@ -12,9 +12,11 @@ import lombok.Data;
 @AllArgsConstructor
 public class OrderDTO {
 
-    private Long id; // Unique identifier of the order
+    private Long id; // Unique identifier of the order within its store
 
-    private String orderCode; // Unique code representing the order
+    private String store; // Store the order belongs to
+
+    private String orderCode; // Code representing the order, unique within its store
 
     private String description; // Description of the order
 
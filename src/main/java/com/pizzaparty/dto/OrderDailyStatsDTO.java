@@ -0,0 +1,24 @@
+package com.pizzaparty.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * DTO that represents the statistics of the orders of one day.
+ */
+@Data
+@AllArgsConstructor
+public class OrderDailyStatsDTO {
+
+    private String day; // Day of the orders, in the ddMMyyyy format of the order codes
+
+    private long created; // Number of orders created during the day
+
+    private long waiting; // Number of orders of the day currently waiting
+
+    private long preparation; // Number of orders of the day currently in preparation
+
+    private long ready; // Number of orders of the day that are ready
+
+    private Double averagePreparationSeconds; // Average preparation time, null if no order has been completed
+}
@@ -0,0 +1,16 @@
+package com.pizzaparty.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+/**
+ * DTO that represents the outcome of a bulk import of orders.
+ */
+@Data
+@AllArgsConstructor
+public class OrderImportResultDTO {
+
+    private long imported; // Orders inserted
+
+    private long skipped; // Orders whose code already existed, left unchanged
+}
@@ -0,0 +1,23 @@
+package com.pizzaparty.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * DTO that represents a page of the results of an order search, from the best to the worst match.
+ * The total number of matches is deliberately not computed: counting them would cost as much as the search itself.
+ */
+@Data
+@AllArgsConstructor
+public class OrderSearchResultDTO {
+
+    private List<OrderDTO> orders; // Orders of the page, ranked by relevance
+
+    private int page; // Index of the page, starting from 0
+
+    private int size; // Requested number of orders per page
+
+    private boolean hasNext; // Whether a next page exists
+}
@@ -0,0 +1,86 @@
+package com.pizzaparty.entity;
+
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Class representing the outcome of an order creation request sent with an Idempotency-Key header.
+ * This entity is mapped to the "idempotency_record" table and is shared by all nodes,
+ * so that a retried request returns the original order instead of creating a duplicate.
+ * Keys are scoped by store: the stores sharing a shard can use the same key for different orders.
+ */
+@Entity
+@IdClass(IdempotencyRecord.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IdempotencyRecord {
+
+    /**
+     * Idempotency key sent by the client, part of the primary key of the record.
+     */
+    @Id // Part of the primary key, so concurrent inserts of the same key in a store collide on the database
+    private String idempotencyKey;
+
+    /**
+     * Store of the order created by the original request, part of the primary key of the record.
+     */
+    @Id
+    private String store;
+
+    /**
+     * Name of the user who sent the original request; a key is only replayed to that user.
+     */
+    @Column(nullable = false, updatable = false)
+    private String principal;
+
+    /**
+     * ID of the order created by the original request.
+     */
+    @Column(nullable = false, updatable = false)
+    private Long orderId;
+
+    /**
+     * Code of the order created by the original request.
+     */
+    @Column(nullable = false, updatable = false)
+    private String orderCode;
+
+    /**
+     * Description sent with the original request, used to detect a key reused for a different order.
+     */
+    @Column(nullable = false, updatable = false)
+    private String description;
+
+    /**
+     * Status of the order when it was created.
+     */
+    @Enumerated(EnumType.STRING) // The column will be stored as a string representing the enum
+    @Column(nullable = false, updatable = false)
+    private OrderStatusEnum status;
+
+    /**
+     * Instant at which the record was created, used to purge expired keys.
+     */
+    @Column(nullable = false, updatable = false)
+    private Instant createdAt;
+
+    /**
+     * Identifier of a record: the store and the idempotency key.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+
+        private String store; // Store of the order
+
+        private String idempotencyKey; // Key sent by the client
+    }
+}
@@ -7,17 +7,38 @@ import jakarta.validation.constraints.Size;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
+
+import java.time.Instant;
 
 /**
  * Class representing an order in the Pizza Party order management system.
  * This entity is mapped to the "Ordine" table in the database.
+ * Orders are kept in the "order" second-level cache region, and their codes in the natural-id cache,
+ * so that lookups by ID or code do not hit the database while the entry is fresh (see HibernateCacheConfig).
  */
 @Entity
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = Order.CACHE_REGION) // Entries are locked while a transaction updates them
+@NaturalIdCache
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
 public class Order {
 
+    /**
+     * Name of the second-level cache region of the orders.
+     */
+    public static final String CACHE_REGION = "order";
+
+    /**
+     * Maximum length of the description of an order.
+     */
+    public static final int MAX_DESCRIPTION_LENGTH = 255;
+
     /**
      * Unique identifier of the order, automatically generated by the database.
      */
@@ -26,10 +47,19 @@ public class Order {
     private Long id;
 
     /**
-     * Unique code of the order, automatically generated before saving.
+     * Store (pizzeria) the order belongs to, see StoreContext.
      * Cannot be null and is not updatable after creation.
      */
-    @Column(unique = true, nullable = false, updatable = false) // The column must be unique, not null, and not updatable
+    @NaturalId // Codes are unique within a store, so the store is part of the natural id
+    @Column(nullable = false, updatable = false)
+    private String store;
+
+    /**
+     * Code of the order, unique within its store, automatically generated before saving.
+     * Cannot be null and is not updatable after creation.
+     */
+    @NaturalId // The code identifies the order like the ID, so lookups by code can use the natural-id cache
+    @Column(nullable = false, updatable = false) // The column must be not null and not updatable; (store, code) is unique
     private String orderCode;
 
     /**
@@ -43,9 +73,18 @@ public class Order {
      * Description of the order, with a maximum length of 255 characters.
      */
     @NotEmpty(message = "The description cannot be empty")
-    @Size(max = 255, message = "The description cannot exceed 255 characters")
+    @Size(max = MAX_DESCRIPTION_LENGTH, message = "The description cannot exceed 255 characters")
     private String description;
 
+    /**
+     * Version of the order, incremented by Hibernate at every update.
+     * Used for optimistic locking and as the ETag of the order.
+     */
+    @Version
+    private Long version;
+
+    private Instant preparationStartedAt; // When the order was taken in charge, used to measure the preparation time
+
     /**
      * Custom constructor to create an order with only the description.
      * The order code will be generated automatically.
@@ -0,0 +1,39 @@
+package com.pizzaparty.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/**
+ * Class representing the order code counter of a store, mapped to the "order_code_sequence" table.
+ * The row of a store is locked while an order is created, so that concurrent creations, on any node,
+ * get consecutive codes instead of colliding on the same one; stores never wait for each other.
+ */
+@Entity
+@Table(name = "order_code_sequence")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderCodeSequence {
+
+    /**
+     * Store of the counter.
+     */
+    @Id
+    private String store;
+
+    /**
+     * Day of the last generated code; the counter restarts when the day changes.
+     */
+    @Column(nullable = false)
+    private LocalDate orderDay;
+
+    /**
+     * Counter of the last generated code of the day.
+     */
+    @Column(nullable = false)
+    private int lastCounter;
+}
@@ -0,0 +1,79 @@
+package com.pizzaparty.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+
+/**
+ * Class representing the rollup of the orders of one store for one day, mapped to the "order_daily_stats" table.
+ * The rows are only changed by increments (see OrderDailyStatsRepository), so that every node can add
+ * its changes without reading the row first; the statistics never need to scan the order table.
+ */
+@Entity
+@Table(name = "order_daily_stats")
+@IdClass(OrderDailyStats.Key.class)
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OrderDailyStats {
+
+    /**
+     * Store of the orders.
+     */
+    @Id
+    private String store;
+
+    /**
+     * Day of the orders, as contained in their code.
+     */
+    @Id
+    private LocalDate orderDay;
+
+    /**
+     * Number of orders created during the day.
+     */
+    private long createdCount;
+
+    /**
+     * Number of orders of the day currently waiting.
+     */
+    private long waitingCount;
+
+    /**
+     * Number of orders of the day currently in preparation.
+     */
+    private long preparationCount;
+
+    /**
+     * Number of orders of the day that are ready.
+     */
+    private long readyCount;
+
+    /**
+     * Sum of the preparation times of the orders of the day, in milliseconds.
+     */
+    @Column(name = "preparation_time_total_ms")
+    private long preparationTimeTotalMs;
+
+    /**
+     * Number of orders whose preparation time is included in the sum.
+     */
+    private long preparationTimeCount;
+
+    /**
+     * Identifier of a rollup: the store and the day.
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+
+        private String store; // Store of the orders
+
+        private LocalDate orderDay; // Day of the orders
+    }
+}
@@ -0,0 +1,34 @@
+package com.pizzaparty.enumeration;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Enum representing the error codes returned to the clients in the error responses.
+ * Clients can rely on the codes, unlike on the messages; never rename or remove a code.
+ */
+public enum ErrorCodeEnum {
+
+    // Definition of the error codes with the HTTP status they are returned with
+    ORDER_NOT_FOUND(HttpStatus.NOT_FOUND), // The requested order does not exist
+    ORDER_INVALID_STATE(HttpStatus.BAD_REQUEST), // The order is not in the status required by the operation
+    ORDER_ALREADY_EXISTS(HttpStatus.BAD_REQUEST), // An order with the same code already exists
+    ORDER_ALREADY_IN_PREPARATION(HttpStatus.BAD_REQUEST), // Another order is already in preparation
+    ORDER_CONCURRENT_MODIFICATION(HttpStatus.CONFLICT), // The order was modified concurrently by another request
+    STORE_NOT_FOUND(HttpStatus.NOT_FOUND), // The store in the path of the request does not exist
+    INVALID_ARGUMENT(HttpStatus.BAD_REQUEST), // A request parameter or header is not valid
+    ACCESS_DENIED(HttpStatus.FORBIDDEN), // The caller is not allowed to perform the operation
+    INTERNAL_ERROR(HttpStatus.INTERNAL_SERVER_ERROR); // Unexpected error
+
+    // HTTP status of the responses carrying the code
+    private final HttpStatus httpStatus;
+
+    // Constructor that assigns the HTTP status to each error code
+    ErrorCodeEnum(HttpStatus httpStatus) {
+        this.httpStatus = httpStatus;
+    }
+
+    // Returns the HTTP status of the responses carrying the code
+    public HttpStatus getHttpStatus() {
+        return httpStatus;
+    }
+}
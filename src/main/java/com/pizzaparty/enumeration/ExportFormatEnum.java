@@ -0,0 +1,33 @@
+package com.pizzaparty.enumeration;
+
+/**
+ * Enum representing the file formats of the order export, also read by the order import.
+ */
+public enum ExportFormatEnum {
+
+    // Definition of export formats with their media type and file extension
+    CSV("text/csv", "csv"), // CSV with a header line, as written by PostgreSQL
+    CSV_GZIP("application/gzip", "csv.gz"); // Same CSV compressed on the fly with gzip
+
+    // Media type of the exported file
+    private final String mediaType;
+
+    // Extension of the exported file
+    private final String extension;
+
+    // Constructor that assigns the media type and the extension to each format
+    ExportFormatEnum(String mediaType, String extension) {
+        this.mediaType = mediaType;
+        this.extension = extension;
+    }
+
+    // Returns the media type of the exported file
+    public String getMediaType() {
+        return mediaType;
+    }
+
+    // Returns the extension of the exported file
+    public String getExtension() {
+        return extension;
+    }
+}
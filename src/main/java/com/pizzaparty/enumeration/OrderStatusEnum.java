@@ -5,19 +5,39 @@ package com.pizzaparty.enumeration;
  */
 public enum OrderStatusEnum {
 
-    // Definition of order statuses with their description
-    WAITING("Waiting"), // Status where the order has been received and is not yet in preparation
-    PREPARATION("Preparation"), // Status where the order is currently being prepared
-    READY("Ready"); // Status where the order has been completed and is ready for pickup
+    // Definition of order statuses with their wire code and description
+    WAITING(0, "Waiting"), // Status where the order has been received and is not yet in preparation
+    PREPARATION(1, "Preparation"), // Status where the order is currently being prepared
+    READY(2, "Ready"); // Status where the order has been completed and is ready for pickup
+
+    // Statuses indexed by their code
+    private static final OrderStatusEnum[] BY_CODE = {WAITING, PREPARATION, READY};
+
+    // Stable small integer used by the compact binary wire format; never reuse or renumber a code
+    private final int code;
 
     // Private variable to store the description of the status
     private final String description;
 
-    // Constructor that assigns the description to each order status
-    OrderStatusEnum(String description) {
+    // Constructor that assigns the code and the description to each order status
+    OrderStatusEnum(int code, String description) {
+        this.code = code; // Assigns the code passed to the constructor
         this.description = description; // Assigns the description passed to the constructor
     }
 
+    // Returns the code of the status used by the compact binary wire format
+    public int getCode() {
+        return code;
+    }
+
+    // Returns the status corresponding to a code of the compact binary wire format
+    public static OrderStatusEnum fromCode(int code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown order status code: " + code);
+        }
+        return BY_CODE[code];
+    }
+
     // Overridden toString() method to return a readable representation of the status
     @Override
     public String toString() {
@@ -0,0 +1,41 @@
+package com.pizzaparty.event;
+
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import lombok.AllArgsConstructor;
+import lombok.Value;
+
+import java.time.Duration;
+
+/**
+ * Event published when an order is created or changes status.
+ * It is published inside the transaction of the change, so listeners can choose
+ * to act before the commit or only once the change has been committed.
+ */
+@Value
+@AllArgsConstructor
+public class OrderChangedEvent {
+
+    String store; // Store the order belongs to
+
+    Long orderId; // Unique identifier of the order
+
+    String orderCode; // Code of the order, unique within its store
+
+    OrderStatusEnum previousStatus; // Status before the change, null when the order has just been created
+
+    OrderStatusEnum status; // Status after the change
+
+    Duration preparationTime; // Time between take-charge and completion, only set when the order has just become ready
+
+    // Change of an order of the current store
+    public OrderChangedEvent(Long orderId, String orderCode, OrderStatusEnum previousStatus, OrderStatusEnum status,
+                             Duration preparationTime) {
+        this(StoreContext.current(), orderId, orderCode, previousStatus, status, preparationTime);
+    }
+
+    // Change of an order of the current store, without preparation time
+    public OrderChangedEvent(Long orderId, String orderCode, OrderStatusEnum previousStatus, OrderStatusEnum status) {
+        this(orderId, orderCode, previousStatus, status, null);
+    }
+}
@@ -1,121 +1,120 @@
 package com.pizzaparty.exceptions;
 
+import com.pizzaparty.dto.ErrorResponseDTO;
+import com.pizzaparty.enumeration.ErrorCodeEnum;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
 
 import java.nio.file.AccessDeniedException;
+import java.time.Duration;
 
 /**
  * Global exception handling class.
- * This class handles exceptions globally for the application, returning custom HTTP responses
- * based on the type of exception that occurs. It uses the {@link RestControllerAdvice} annotation to apply
- * to all exceptions not explicitly handled in the controllers.
+ * This class handles exceptions globally for the application, returning an {@link ErrorResponseDTO}
+ * with a stable error code based on the type of exception that occurs. It uses the {@link RestControllerAdvice}
+ * annotation to apply to all exceptions not explicitly handled in the controllers.
+ * <p>
+ * Expected errors (business rules, conflicts, invalid requests) are logged without stack trace and rate-limited,
+ * since they can happen hundreds of times per second at peak; unexpected errors are always logged with their stack trace.
  */
 @RestControllerAdvice
 public class GlobalExceptionHandler {
 
     private static final Logger logger = LoggerFactory.getLogger(GlobalExceptionHandler.class);
 
+    private final LogRateLimiter expectedErrorsLog;
+
+    public GlobalExceptionHandler(@Value("${pizzaparty.errors.log-limit:10}") int logLimit,
+                                  @Value("${pizzaparty.errors.log-interval:1s}") Duration logInterval) {
+        this.expectedErrorsLog = new LogRateLimiter(logLimit, logInterval);
+    }
+
     /**
      * Handles all RuntimeException type exceptions.
      * @param ex The RuntimeException.
      * @return An HTTP response with the exception message and status 500 (INTERNAL_SERVER_ERROR).
      */
     @ExceptionHandler(RuntimeException.class)
-    public ResponseEntity<String> handleRuntimeException(RuntimeException ex) {
+    public ResponseEntity<ErrorResponseDTO> handleRuntimeException(RuntimeException ex) {
         logger.error("Internal error: ", ex);
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        return error(ErrorCodeEnum.INTERNAL_ERROR, ex.getMessage());
     }
 
     /**
      * Handles IllegalArgumentException.
      * @param ex The IllegalArgumentException.
-     * @return An HTTP response with a custom error message and status 400 (BAD_REQUEST).
+     * @return An HTTP response with the exception message and status 400 (BAD_REQUEST).
      */
     @ExceptionHandler(IllegalArgumentException.class)
-    public ResponseEntity<String> handleIllegalArgumentException(IllegalArgumentException ex) {
-        logger.warn("Invalid argument: ", ex);
-        return new ResponseEntity<>("Invalid argument: " + ex.getMessage(), HttpStatus.BAD_REQUEST);
+    public ResponseEntity<ErrorResponseDTO> handleIllegalArgumentException(IllegalArgumentException ex) {
+        return expectedError(ErrorCodeEnum.INVALID_ARGUMENT, ex.getMessage());
     }
 
     /**
      * Handles NullPointerException.
      * @param ex The NullPointerException.
-     * @return An HTTP response with a custom error message and status 500 (INTERNAL_SERVER_ERROR).
+     * @return An HTTP response with the exception message and status 500 (INTERNAL_SERVER_ERROR).
      */
     @ExceptionHandler(NullPointerException.class)
-    public ResponseEntity<String> handleNullPointerException(NullPointerException ex) {
+    public ResponseEntity<ErrorResponseDTO> handleNullPointerException(NullPointerException ex) {
         logger.error("Internal error (NullPointer): ", ex);
-        return new ResponseEntity<>("An internal error occurred: " + ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        return error(ErrorCodeEnum.INTERNAL_ERROR, ex.getMessage());
     }
 
     /**
      * Handles AccessDeniedException.
      * @param ex The AccessDeniedException.
-     * @return An HTTP response with a custom error message and status 403 (FORBIDDEN).
+     * @return An HTTP response with the exception message and status 403 (FORBIDDEN).
      */
     @ExceptionHandler(AccessDeniedException.class)
-    public ResponseEntity<String> handleAccessDeniedException(AccessDeniedException ex) {
-        logger.warn("Access denied: ", ex);
-        return new ResponseEntity<>("Access denied: " + ex.getMessage(), HttpStatus.FORBIDDEN);
+    public ResponseEntity<ErrorResponseDTO> handleAccessDeniedException(AccessDeniedException ex) {
+        return expectedError(ErrorCodeEnum.ACCESS_DENIED, ex.getMessage());
     }
 
     /**
      * Handles all other generic exceptions not handled previously.
      * @param ex The Exception.
-     * @return An HTTP response with a generic error message and status 500 (INTERNAL_SERVER_ERROR).
+     * @return An HTTP response with the exception message and status 500 (INTERNAL_SERVER_ERROR).
      */
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<String> handleException(Exception ex) {
+    public ResponseEntity<ErrorResponseDTO> handleException(Exception ex) {
         logger.error("Generic internal error: ", ex);
-        return new ResponseEntity<>("Internal server error: " + ex.getMessage(), HttpStatus.INTERNAL_SERVER_ERROR);
+        return error(ErrorCodeEnum.INTERNAL_ERROR, ex.getMessage());
     }
 
     /**
-     * Handles the custom exception OrderNotFoundException.
-     * @param ex The OrderNotFoundException.
-     * @return An HTTP response with the exception message and status 404 (NOT_FOUND).
+     * Handles the business rule exceptions of orders (OrderNotFoundException, OrderInvalidStateException,
+     * OrderAlreadyExistsException, OrderAlreadyInPreparationException).
+     * @param ex The OrderDomainException.
+     * @return An HTTP response with the error code of the exception, its message and the matching status.
      */
-    @ExceptionHandler(OrderNotFoundException.class)
-    public ResponseEntity<String> handleOrderNotFoundException(OrderNotFoundException ex) {
-        logger.warn("Order not found: ", ex);
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.NOT_FOUND);
+    @ExceptionHandler(OrderDomainException.class)
+    public ResponseEntity<ErrorResponseDTO> handleOrderDomainException(OrderDomainException ex) {
+        return expectedError(ex.getErrorCode(), ex.getMessage());
     }
 
     /**
-     * Handles the custom exception OrderInvalidStateException.
-     * @param ex The OrderInvalidStateException.
-     * @return An HTTP response with the exception message and status 400 (BAD_REQUEST).
+     * Handles OptimisticLockingFailureException, raised when an order was modified concurrently by another request.
+     * @param ex The OptimisticLockingFailureException.
+     * @return An HTTP response with a custom error message and status 409 (CONFLICT).
      */
-    @ExceptionHandler(OrderInvalidStateException.class)
-    public ResponseEntity<String> handleOrderInvalidStateException(OrderInvalidStateException ex) {
-        logger.warn("Invalid order state: ", ex);
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponseDTO> handleOptimisticLockingFailureException(OptimisticLockingFailureException ex) {
+        return expectedError(ErrorCodeEnum.ORDER_CONCURRENT_MODIFICATION, "The order was modified by another request, please retry");
     }
 
-    /**
-     * Handles the custom exception OrderAlreadyExistsException.
-     * @param ex The OrderAlreadyExistsException.
-     * @return An HTTP response with the exception message and status 400 (BAD_REQUEST).
-     */
-    @ExceptionHandler(OrderAlreadyExistsException.class)
-    public ResponseEntity<String> handleOrderAlreadyExistsException(OrderAlreadyExistsException ex) {
-        logger.warn("Order already exists: ", ex);
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    // Logs an expected error without stack trace, within the rate limit, and builds its response
+    private ResponseEntity<ErrorResponseDTO> expectedError(ErrorCodeEnum code, String message) {
+        expectedErrorsLog.warn(logger, code, message);
+        return error(code, message);
     }
 
-    /**
-     * Handles the custom exception OrderAlreadyInPreparationException.
-     * @param ex The OrderAlreadyInPreparationException.
-     * @return An HTTP response with the exception message and status 400 (BAD_REQUEST).
-     */
-    @ExceptionHandler(OrderAlreadyInPreparationException.class)
-    public ResponseEntity<String> handleOrderAlreadyInPreparationException(OrderAlreadyInPreparationException ex) {
-        logger.warn("Order already in preparation: ", ex);
-        return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+    private static ResponseEntity<ErrorResponseDTO> error(ErrorCodeEnum code, String message) {
+        return new ResponseEntity<>(new ErrorResponseDTO(code, message), code.getHttpStatus());
     }
 }
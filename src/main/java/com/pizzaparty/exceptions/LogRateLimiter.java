@@ -0,0 +1,80 @@
+package com.pizzaparty.exceptions;
+
+import com.pizzaparty.enumeration.ErrorCodeEnum;
+import org.slf4j.Logger;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limits how many expected errors of the same code are logged per interval.
+ * Under contention the same conflict can happen hundreds of times per second: the first ones of each
+ * interval are logged, the others are only counted and reported in a single line at the next interval.
+ */
+public class LogRateLimiter {
+
+    private final int maxPerInterval;
+
+    private final long intervalNanos;
+
+    // One window per error code, created upfront so that logging never allocates or locks
+    private final Map<ErrorCodeEnum, Window> windows = new EnumMap<>(ErrorCodeEnum.class);
+
+    /**
+     * @param maxPerInterval Maximum number of errors of the same code logged per interval.
+     * @param interval Length of the interval.
+     */
+    public LogRateLimiter(int maxPerInterval, Duration interval) {
+        this.maxPerInterval = maxPerInterval;
+        this.intervalNanos = interval.toNanos();
+        for (ErrorCodeEnum code : ErrorCodeEnum.values()) {
+            windows.put(code, new Window(System.nanoTime()));
+        }
+    }
+
+    /**
+     * Logs an expected error at WARN level, without stack trace, unless too many errors of the same code
+     * were already logged in the current interval.
+     *
+     * @param logger The logger to write to.
+     * @param code The code of the error.
+     * @param message The message of the error.
+     * @return true if the error was logged, false if it was only counted.
+     */
+    public boolean warn(Logger logger, ErrorCodeEnum code, String message) {
+        Window window = windows.get(code);
+        long now = System.nanoTime();
+        long start = window.start.get();
+        // The first caller after the end of the interval opens the next one and reports what was skipped
+        if (now - start >= intervalNanos && window.start.compareAndSet(start, now)) {
+            int suppressed = window.suppressed.getAndSet(0);
+            window.logged.set(0);
+            if (suppressed > 0) {
+                logger.warn("{}: {} more errors not logged in the last interval", code, suppressed);
+            }
+        }
+        if (window.logged.incrementAndGet() <= maxPerInterval) {
+            logger.warn("{}: {}", code, message);
+            return true;
+        }
+        window.suppressed.incrementAndGet();
+        return false;
+    }
+
+    private static class Window {
+
+        // System.nanoTime() at the start of the current interval
+        private final AtomicLong start;
+
+        private final AtomicInteger logged = new AtomicInteger();
+
+        private final AtomicInteger suppressed = new AtomicInteger();
+
+        private Window(long start) {
+            this.start = new AtomicLong(start);
+        }
+    }
+}
@@ -1,10 +1,12 @@
 package com.pizzaparty.exceptions;
 
+import com.pizzaparty.enumeration.ErrorCodeEnum;
+
 /**
  * Custom exception thrown when trying to create an order with a code that already exists in the system.
- * Extends RuntimeException, allowing it to be used without explicit handling.
+ * Extends OrderDomainException, so it is unchecked and captures no stack trace.
  */
-public class OrderAlreadyExistsException extends RuntimeException {
+public class OrderAlreadyExistsException extends OrderDomainException {
 
     /**
      * Constructor that accepts an error message.
@@ -12,6 +14,6 @@ public class OrderAlreadyExistsException extends RuntimeException {
      * @param message The error message describing why the order cannot be created.
      */
     public OrderAlreadyExistsException(String message) {
-        super(message);
+        super(ErrorCodeEnum.ORDER_ALREADY_EXISTS, message);
     }
 }
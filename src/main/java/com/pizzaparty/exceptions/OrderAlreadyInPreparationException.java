@@ -1,11 +1,13 @@
 package com.pizzaparty.exceptions;
 
+import com.pizzaparty.enumeration.ErrorCodeEnum;
+
 /**
  * Exception thrown when trying to take charge of an order
  * but another order is already in preparation.
  */
-public class OrderAlreadyInPreparationException extends RuntimeException {
+public class OrderAlreadyInPreparationException extends OrderDomainException {
     public OrderAlreadyInPreparationException(String message) {
-        super(message);
+        super(ErrorCodeEnum.ORDER_ALREADY_IN_PREPARATION, message);
     }
 }
@@ -0,0 +1,36 @@
+package com.pizzaparty.exceptions;
+
+import com.pizzaparty.enumeration.ErrorCodeEnum;
+
+/**
+ * Base class of the exceptions raised by the business rules of orders.
+ * These are expected outcomes under contention (e.g. many pizzaioli taking charge of orders at the same time),
+ * not bugs: they carry an error code for the client and do not capture a stack trace,
+ * which would cost far more than the rest of the error path and would never be read.
+ */
+public abstract class OrderDomainException extends RuntimeException {
+
+    // Code returned to the client in the error response
+    private final ErrorCodeEnum errorCode;
+
+    /**
+     * Constructor that accepts the error code and a message.
+     *
+     * @param errorCode The code returned to the client.
+     * @param message The message describing the error.
+     */
+    protected OrderDomainException(ErrorCodeEnum errorCode, String message) {
+        // No cause, no suppressed exceptions and no stack trace
+        super(message, null, false, false);
+        this.errorCode = errorCode;
+    }
+
+    /**
+     * Returns the code returned to the client.
+     *
+     * @return The error code.
+     */
+    public ErrorCodeEnum getErrorCode() {
+        return errorCode;
+    }
+}
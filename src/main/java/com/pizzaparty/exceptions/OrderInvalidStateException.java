@@ -1,11 +1,13 @@
 package com.pizzaparty.exceptions;
 
+import com.pizzaparty.enumeration.ErrorCodeEnum;
+
 /**
  * Custom exception to handle situations where an order cannot be
  * processed because it is not in the correct state.
- * Extends RuntimeException, allowing it to be used without explicit handling.
+ * Extends OrderDomainException, so it is unchecked and captures no stack trace.
  */
-public class OrderInvalidStateException extends RuntimeException {
+public class OrderInvalidStateException extends OrderDomainException {
 
     /**
      * Constructor for the OrderInvalidStateException class.
@@ -15,7 +17,7 @@ public class OrderInvalidStateException extends RuntimeException {
      * @param message The message describing the error.
      */
     public OrderInvalidStateException(String message) {
-        // Passes the message to the constructor of RuntimeException
-        super(message);
+        // Passes the error code and the message to the constructor of OrderDomainException
+        super(ErrorCodeEnum.ORDER_INVALID_STATE, message);
     }
 }
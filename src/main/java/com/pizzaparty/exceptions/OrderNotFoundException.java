@@ -1,10 +1,12 @@
 package com.pizzaparty.exceptions;
 
+import com.pizzaparty.enumeration.ErrorCodeEnum;
+
 /**
  * Custom exception to handle the case when an order is not found in the system.
- * Extends RuntimeException, allowing it to be used without explicit handling.
+ * Extends OrderDomainException, so it is unchecked and captures no stack trace.
  */
-public class OrderNotFoundException extends RuntimeException {
+public class OrderNotFoundException extends OrderDomainException {
 
     /**
      * Constructor for the OrderNotFoundException class.
@@ -15,7 +17,7 @@ public class OrderNotFoundException extends RuntimeException {
      * @param message The message describing why the order was not found.
      */
     public OrderNotFoundException(String message) {
-        // Passes the error message to the superclass RuntimeException
-        super(message);
+        // Passes the error code and the message to the superclass OrderDomainException
+        super(ErrorCodeEnum.ORDER_NOT_FOUND, message);
     }
 }
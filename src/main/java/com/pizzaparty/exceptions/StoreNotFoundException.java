@@ -0,0 +1,20 @@
+package com.pizzaparty.exceptions;
+
+import com.pizzaparty.enumeration.ErrorCodeEnum;
+
+/**
+ * Custom exception to handle the case when a request targets a store that is not configured.
+ * Extends OrderDomainException, so it is unchecked and captures no stack trace.
+ */
+public class StoreNotFoundException extends OrderDomainException {
+
+    /**
+     * Constructor for the StoreNotFoundException class.
+     *
+     * @param message The message describing why the store was not found.
+     */
+    public StoreNotFoundException(String message) {
+        // Passes the error code and the message to the superclass OrderDomainException
+        super(ErrorCodeEnum.STORE_NOT_FOUND, message);
+    }
+}
@@ -23,6 +23,7 @@ public class OrderMapper {
         // Creates a new OrderDTO using data from the Order object
         return new OrderDTO(
                 order.getId(), // Maps the order ID
+                order.getStore(), // Maps the store of the order
                 order.getOrderCode(), // Maps the order code
                 order.getDescription(), // Maps the order description
                 order.getStatus() // Maps the order status
@@ -0,0 +1,59 @@
+package com.pizzaparty.repository;
+
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+
+import java.time.Instant;
+
+/**
+ * State of an order kept in memory by the edge storage mode (see EdgeOrderServiceImpl), as written to the journal.
+ * Immutable: every change replaces the state of the order with a new one and increments its version.
+ *
+ * @param id Local ID of the order, negative so that it is never mistaken for an ID assigned by the database.
+ * @param store Store of the order.
+ * @param orderCode Current code of the order; changed if the code was already taken in the database.
+ * @param originalCode Code given to the customer when the order was created.
+ * @param description Description of the order.
+ * @param status Status of the order.
+ * @param version Local version of the order, incremented at every change.
+ * @param preparationStartedAt When the order was taken in charge, or null.
+ * @param inserted Whether the order is known to be in the database.
+ * @param pending Whether this state still has to be written to the database.
+ */
+public record EdgeOrder(long id,
+                        String store,
+                        String orderCode,
+                        String originalCode,
+                        String description,
+                        OrderStatusEnum status,
+                        long version,
+                        Instant preparationStartedAt,
+                        boolean inserted,
+                        boolean pending) implements EdgeOrderJournal.Entry {
+
+    /**
+     * @param status The new status.
+     * @param preparationStartedAt When the order was taken in charge, or null.
+     * @return The state of the order after a change of status, to be written to the database.
+     */
+    public EdgeOrder withStatus(OrderStatusEnum status, Instant preparationStartedAt) {
+        return new EdgeOrder(id, store, orderCode, originalCode, description, status, version + 1, preparationStartedAt, inserted, true);
+    }
+
+    /**
+     * @param writtenVersion The version written to the database.
+     * @param writtenCode The code of the order in the database.
+     * @return The state of the order once a version was written; still pending if it changed in the meantime.
+     */
+    public EdgeOrder written(long writtenVersion, String writtenCode) {
+        return new EdgeOrder(id, store, writtenCode, originalCode, description, status, version, preparationStartedAt,
+                true, version != writtenVersion);
+    }
+
+    /**
+     * @return The DTO of the order, as returned by the OrderService.
+     */
+    public OrderDTO toDTO() {
+        return new OrderDTO(id, store, orderCode, description, status);
+    }
+}
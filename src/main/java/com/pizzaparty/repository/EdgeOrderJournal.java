@@ -0,0 +1,165 @@
+package com.pizzaparty.repository;
+
+import com.fasterxml.jackson.annotation.JsonSubTypes;
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Local durable buffer of the edge storage mode: an append-only file of JSON lines holding the orders kept
+ * in memory by EdgeOrderServiceImpl. Every change is forced to the disk before the call returns, so that the
+ * changes not yet written to the database survive a crash or a power loss of the kiosk.
+ * The file is rewritten after each flush to the database, keeping only the counters and the orders still in memory.
+ */
+@Repository
+@ConditionalOnProperty(name = "pizzaparty.storage.mode", havingValue = "edge")
+public class EdgeOrderJournal implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(EdgeOrderJournal.class);
+
+    private final Path path;
+
+    // Dates as ISO strings, enums by name
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .build();
+
+    // Open in append mode, null until the journal is read
+    private FileChannel channel;
+
+    public EdgeOrderJournal(@Value("${pizzaparty.storage.edge.journal:data/edge-journal.jsonl}") Path path) {
+        this.path = path.toAbsolutePath();
+    }
+
+    /**
+     * Reads the journal, creating it if it does not exist.
+     * A last line cut by a crash during its write is skipped: its change was never acknowledged to the client.
+     *
+     * @return The entries of the journal, in the order in which they were written.
+     * @throws IllegalStateException If a line other than the last one cannot be read.
+     */
+    public synchronized List<Entry> read() {
+        List<Entry> entries = new ArrayList<>();
+        try {
+            Files.createDirectories(path.getParent());
+            List<String> lines = Files.exists(path) ? Files.readAllLines(path, StandardCharsets.UTF_8) : List.of();
+            for (int i = 0; i < lines.size(); i++) {
+                try {
+                    entries.add(objectMapper.readValue(lines.get(i), Entry.class));
+                } catch (JsonProcessingException ex) {
+                    if (i < lines.size() - 1) {
+                        throw new IllegalStateException("Corrupted edge journal " + path + " at line " + (i + 1), ex);
+                    }
+                    logger.warn("Skipping the incomplete last line of the edge journal {}", path);
+                }
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        return entries;
+    }
+
+    /**
+     * Appends an entry and forces it to the disk.
+     *
+     * @param entry The entry to append.
+     */
+    public synchronized void append(Entry entry) {
+        try {
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            }
+            channel.write(ByteBuffer.wrap(toLine(entry)));
+            channel.force(false);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    /**
+     * Replaces the content of the journal atomically: a crash leaves either the old or the new content.
+     *
+     * @param entries The entries of the new journal.
+     */
+    public synchronized void rewrite(List<? extends Entry> entries) {
+        Path next = path.resolveSibling(path.getFileName() + ".next");
+        try (FileChannel out = FileChannel.open(next, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Entry entry : entries) {
+                out.write(ByteBuffer.wrap(toLine(entry)));
+            }
+            out.force(false);
+            close();
+            Files.move(next, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    public synchronized void destroy() throws IOException {
+        close();
+    }
+
+    private void close() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private byte[] toLine(Entry entry) throws JsonProcessingException {
+        return (objectMapper.writeValueAsString(entry) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * A line of the journal: the state of an order, or the counters at the time the journal was rewritten.
+     */
+    @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, property = "type")
+    @JsonSubTypes({
+            @JsonSubTypes.Type(value = EdgeOrder.class, name = "order"),
+            @JsonSubTypes.Type(value = Checkpoint.class, name = "checkpoint")
+    })
+    public sealed interface Entry permits EdgeOrder, Checkpoint {
+    }
+
+    /**
+     * Counters that cannot be derived from the orders still in memory.
+     *
+     * @param lastId The last local ID assigned (as a positive number).
+     * @param codeCounters The code counter of each store.
+     */
+    public record Checkpoint(long lastId, Map<String, CodeCounter> codeCounters) implements Entry {
+    }
+
+    /**
+     * Order code counter of a store.
+     *
+     * @param day The day of the last generated code.
+     * @param lastCounter The counter of the last generated code.
+     */
+    public record CodeCounter(LocalDate day, int lastCounter) {
+    }
+}
@@ -0,0 +1,29 @@
+package com.pizzaparty.repository;
+
+import com.pizzaparty.entity.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+/**
+ * Repository that manages data access for the idempotency records of order creation requests.
+ * Extends JpaRepository to take advantage of default CRUD operations.
+ */
+@Repository
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, IdempotencyRecord.Key> {
+
+    /**
+     * Deletes all the records of a store created before the given instant with a single bulk statement.
+     *
+     * @param store The store of the records.
+     * @param cutoff Records created before this instant are deleted.
+     * @return The number of deleted records.
+     */
+    @Modifying
+    @Query("DELETE FROM IdempotencyRecord r WHERE r.store = :store AND r.createdAt < :cutoff")
+    int deleteByStoreAndCreatedBefore(@Param("store") String store, @Param("cutoff") Instant cutoff);
+}
@@ -0,0 +1,46 @@
+package com.pizzaparty.repository;
+
+import com.pizzaparty.entity.OrderCodeSequence;
+import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Optional;
+
+/**
+ * Repository that manages data access for the order code counters of the stores.
+ */
+@Repository
+public interface OrderCodeSequenceRepository extends JpaRepository<OrderCodeSequence, String> {
+
+    /**
+     * Finds the counter of a store and locks it until the end of the transaction.
+     *
+     * @param store The store.
+     * @return The locked counter, or an empty Optional if the store has none yet.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM OrderCodeSequence s WHERE s.store = :store")
+    Optional<OrderCodeSequence> findForUpdate(@Param("store") String store);
+
+    /**
+     * Creates the counter of a store, unless it already exists (e.g. created concurrently by another node).
+     * The statement only touches order_code_sequence: without this hint, Hibernate would evict the whole second-level cache.
+     *
+     * @param store The store.
+     * @param day The current day.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO order_code_sequence (store, order_day, last_counter) VALUES (:store, :day, 0) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "order_code_sequence"))
+    void insertIfAbsent(@Param("store") String store, @Param("day") LocalDate day);
+}
@@ -0,0 +1,87 @@
+package com.pizzaparty.repository;
+
+import com.pizzaparty.entity.OrderDailyStats;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Repository that manages data access for the daily rollups of the orders.
+ */
+@Repository
+public interface OrderDailyStatsRepository extends JpaRepository<OrderDailyStats, OrderDailyStats.Key> {
+
+    /**
+     * Finds the rollups of a store for a range of days.
+     *
+     * @param store The store.
+     * @param from The first day, included.
+     * @param to The last day, included.
+     * @return The rollups of the days that have orders, sorted by day.
+     */
+    List<OrderDailyStats> findByStoreAndOrderDayBetweenOrderByOrderDay(String store, LocalDate from, LocalDate to);
+
+    /**
+     * Creates the empty rollup of a store for a day, unless it already exists (e.g. created concurrently by another node).
+     * The statement only touches order_daily_stats: without this hint, Hibernate would evict the whole second-level cache.
+     *
+     * @param store The store of the rollup.
+     * @param day The day of the rollup.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO order_daily_stats (store, order_day, created_count, waiting_count, preparation_count, "
+            + "ready_count, preparation_time_total_ms, preparation_time_count) VALUES (:store, :day, 0, 0, 0, 0, 0, 0) "
+            + "ON CONFLICT DO NOTHING", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "order_daily_stats"))
+    void insertIfAbsent(@Param("store") String store, @Param("day") LocalDate day);
+
+    /**
+     * Recomputes the order counts of the rollup of a store for a day from the orders of that day, creating the rollup
+     * if the day has orders. The preparation times are kept: the time of completion of the orders is not stored.
+     * PostgreSQL only; the day is matched through the index idx_order_code_day (see create_schema.sql).
+     *
+     * @param store The store of the rollup.
+     * @param day The day of the rollup.
+     * @param orderDay The same day as yyyyMMdd, as rearranged from the order codes by the index.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO order_daily_stats (store, order_day, created_count, waiting_count, preparation_count, "
+            + "ready_count, preparation_time_total_ms, preparation_time_count) "
+            + "SELECT :store, :day, count(*), count(*) FILTER (WHERE status = 'WAITING'), "
+            + "count(*) FILTER (WHERE status = 'PREPARATION'), count(*) FILTER (WHERE status = 'READY'), 0, 0 "
+            + "FROM \"order\" WHERE store = :store "
+            + "AND (substring(order_code, 9, 4) || substring(order_code, 7, 2) || substring(order_code, 5, 2)) = :orderDay "
+            + "HAVING count(*) > 0 "
+            + "ON CONFLICT (store, order_day) DO UPDATE SET created_count = EXCLUDED.created_count, "
+            + "waiting_count = EXCLUDED.waiting_count, preparation_count = EXCLUDED.preparation_count, "
+            + "ready_count = EXCLUDED.ready_count", nativeQuery = true)
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_NATIVE_SPACES, value = "order_daily_stats"))
+    void recomputeCounts(@Param("store") String store, @Param("day") LocalDate day, @Param("orderDay") String orderDay);
+
+    /**
+     * Adds changes to the rollup of a store for a day.
+     * The increments are applied by the database, so concurrent updates from several nodes never lose a change.
+     *
+     * @return The number of updated rollups (0 if the rollup does not exist).
+     */
+    @Modifying
+    @Query("UPDATE OrderDailyStats s SET s.createdCount = s.createdCount + :created, "
+            + "s.waitingCount = s.waitingCount + :waiting, "
+            + "s.preparationCount = s.preparationCount + :preparation, "
+            + "s.readyCount = s.readyCount + :ready, "
+            + "s.preparationTimeTotalMs = s.preparationTimeTotalMs + :preparationTimeTotalMs, "
+            + "s.preparationTimeCount = s.preparationTimeCount + :preparationTimeCount "
+            + "WHERE s.store = :store AND s.orderDay = :day")
+    int addChanges(@Param("store") String store, @Param("day") LocalDate day, @Param("created") long created,
+                   @Param("waiting") long waiting, @Param("preparation") long preparation, @Param("ready") long ready,
+                   @Param("preparationTimeTotalMs") long preparationTimeTotalMs,
+                   @Param("preparationTimeCount") long preparationTimeCount);
+}
@@ -2,50 +2,88 @@ package com.pizzaparty.repository;
 
 import com.pizzaparty.entity.Order;
 import com.pizzaparty.enumeration.OrderStatusEnum;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
-import java.util.Optional;
 
 /**
  * Repository that manages data access for orders in the Pizza Party order management system.
- * Extends JpaRepository to take advantage of default CRUD operations.
+ * Extends JpaRepository to take advantage of default CRUD operations,
+ * and OrderRepositoryCustom for the lookups that go through the second-level cache.
  */
 @Repository
-public interface OrderRepository extends JpaRepository<Order, Long> {
+public interface OrderRepository extends JpaRepository<Order, Long>, OrderRepositoryCustom {
 
     /**
-     * Finds an order by its unique code.
-     * Returns an Optional to handle the case where the order does not exist.
-     *
-     * @param orderCode The unique identifier of the order.
-     * @return An Optional that may contain the found order, or be empty if the order does not exist.
-     */
-    Optional<Order> findByOrderCode(String orderCode);
-
-    /**
-     * Finds all orders that have a specific status.
+     * Finds all orders of a store that have a specific status.
+     * The result is kept in the query cache until an order changes or the cache entry expires.
      *
+     * @param store The store of the orders.
      * @param status The status of the order (e.g., "WAITING", "PREPARATION", "READY").
      * @return A list of orders with the specified status.
      */
-    List<Order> findByStatus(OrderStatusEnum status);
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_CACHEABLE, value = "true"))
+    List<Order> findByStoreAndStatus(String store, OrderStatusEnum status);
 
     /**
-     * Checks if an order with the specified unique code exists.
+     * Checks if an order with the specified code exists in a store.
      *
-     * @param orderCode The unique identifier of the order.
+     * @param store The store of the order.
+     * @param orderCode The code of the order, unique within the store.
      * @return true if at least one order with the code exists, otherwise false.
      */
-    boolean existsByOrderCode(String orderCode);
+    boolean existsByStoreAndOrderCode(String store, String orderCode);
 
     /**
-     * Counts the number of orders that are currently in "PREPARATION" status.
+     * Counts the number of orders of a store that are currently in "PREPARATION" status.
+     * Never cached: it enforces the preparation limit and must see the changes of every node.
      *
+     * @param store The store of the orders.
      * @param status The status of the order (PREPARATION).
      * @return The number of orders in preparation.
      */
-    int countByStatus(OrderStatusEnum status);
+    int countByStoreAndStatus(String store, OrderStatusEnum status);
 
+    /**
+     * Searches the orders of a store whose description matches a text, from the best to the worst match.
+     * An order matches when its description contains the words of the text (full-text search, GIN index
+     * idx_order_description_fts) or words similar to it, which tolerates typos and partial words
+     * (trigram word similarity, GIN index idx_order_description_trgm).
+     * <p>
+     * Only the maxCandidates most recent matches (by ID) are ranked and paged through: the scan stops there,
+     * so a common word does not score every order of the store, and every page is taken from the same
+     * candidates whatever the plan chosen. The statement is still cancelled after 2 seconds (e.g. a text
+     * matching few orders through a plan walking the primary key). PostgreSQL only (pg_trgm extension,
+     * see create_schema.sql).
+     *
+     * @param store The store of the orders.
+     * @param text The searched text, in web search syntax (e.g. margherita -glutine, "senza glutine").
+     * @param maxCandidates Maximum number of matches ranked, the most recent ones.
+     * @param limit Maximum number of orders returned.
+     * @param offset Number of ranked orders skipped.
+     * @return The matching orders, ranked by relevance.
+     */
+    @Query(value = """
+            WITH candidates AS (
+                SELECT o.* FROM "order" o
+                WHERE o.store = :store
+                  AND (to_tsvector('simple', o.description) @@ websearch_to_tsquery('simple', :text)
+                       OR :text <% o.description)
+                ORDER BY o.id DESC
+                LIMIT :maxCandidates
+            )
+            SELECT c.* FROM candidates c
+            ORDER BY ts_rank(to_tsvector('simple', c.description), websearch_to_tsquery('simple', :text))
+                     + word_similarity(:text, c.description) DESC, c.id DESC
+            LIMIT :limit OFFSET :offset
+            """, nativeQuery = true)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_SPEC_QUERY_TIMEOUT, value = "2000"))
+    List<Order> search(@Param("store") String store, @Param("text") String text,
+                       @Param("maxCandidates") int maxCandidates, @Param("limit") int limit, @Param("offset") int offset);
 }
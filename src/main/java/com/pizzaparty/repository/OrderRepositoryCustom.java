@@ -0,0 +1,22 @@
+package com.pizzaparty.repository;
+
+import com.pizzaparty.entity.Order;
+
+import java.util.Optional;
+
+/**
+ * Custom data access methods for orders, implemented with the Hibernate API
+ * where Spring Data derived queries cannot use the second-level cache.
+ */
+public interface OrderRepositoryCustom {
+
+    /**
+     * Finds an order by its code, unique within its store, through the natural-id cache.
+     * Returns an Optional to handle the case where the order does not exist.
+     *
+     * @param store The store of the order.
+     * @param orderCode The code of the order.
+     * @return An Optional that may contain the found order, or be empty if the order does not exist.
+     */
+    Optional<Order> findByStoreAndOrderCode(String store, String orderCode);
+}
@@ -0,0 +1,36 @@
+package com.pizzaparty.repository;
+
+import com.pizzaparty.entity.Order;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+
+import java.util.Optional;
+
+/**
+ * Implementation of the custom data access methods for orders.
+ * Picked up by Spring Data as a fragment of {@link OrderRepository}.
+ */
+public class OrderRepositoryCustomImpl implements OrderRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Finds an order by its code, unique within its store.
+     * A derived query would always run a SELECT; the natural-id lookup resolves the store and code to the ID
+     * through the natural-id cache, then loads the order from the entity cache.
+     *
+     * @param store The store of the order.
+     * @param orderCode The code of the order.
+     * @return An Optional that may contain the found order, or be empty if the order does not exist.
+     */
+    @Override
+    public Optional<Order> findByStoreAndOrderCode(String store, String orderCode) {
+        return entityManager.unwrap(Session.class)
+                .byNaturalId(Order.class)
+                .using("store", store)
+                .using("orderCode", orderCode)
+                .loadOptional();
+    }
+}
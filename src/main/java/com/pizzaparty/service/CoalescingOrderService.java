@@ -0,0 +1,145 @@
+package com.pizzaparty.service;
+
+import com.pizzaparty.config.DataSourceRouting;
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.dto.OrderSearchResultDTO;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Order service placed in front of {@link OrderServiceImpl} that coalesces concurrent identical reads.
+ * Kitchen screens and customers poll the same data at the same moment: while a read is in flight,
+ * identical requests wait for it and share its result instead of running their own query.
+ * Reads that could observe a change recently made on this node are sent to the primary database
+ * instead of the replica (see {@link ReadYourWritesTracker}). Write operations are delegated unchanged.
+ * Reads are keyed by store, so that a read never joins a read of another store.
+ * Used with the database storage mode; the edge storage mode serves the orders from memory instead.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "pizzaparty.storage.mode", havingValue = "database", matchIfMissing = true)
+public class CoalescingOrderService implements OrderService, MeterBinder {
+
+    // Prefix of the keys of the reads by code sent to the primary
+    private static final String PRIMARY_PREFIX = "primary:";
+
+    private final OrderService delegate;
+
+    private final ReadYourWritesTracker readYourWritesTracker;
+
+    // Reads are keyed by route as well, so that a read needing the primary never joins a replica read
+    private final SingleFlight<String, List<OrderDTO>> pendingOrdersFlight = new SingleFlight<>();
+
+    private final SingleFlight<String, OrderDTO> orderByCodeFlight = new SingleFlight<>();
+
+    public CoalescingOrderService(OrderServiceImpl delegate, ReadYourWritesTracker readYourWritesTracker) {
+        this.delegate = delegate;
+        this.readYourWritesTracker = readYourWritesTracker;
+    }
+
+    @Override
+    public OrderDTO createOrder(String description) {
+        return delegate.createOrder(description);
+    }
+
+    @Override
+    public OrderDTO takeCharge(Long id) {
+        return delegate.takeCharge(id);
+    }
+
+    @Override
+    public OrderDTO completeOrder(Long id) {
+        return delegate.completeOrder(id);
+    }
+
+    /**
+     * Retrieves the pending orders, sharing the query in flight if there is one.
+     * The list is unmodifiable because it can be returned to several callers.
+     *
+     * @return A list of DTOs of orders in the "WAITING" status.
+     */
+    @Override
+    public List<OrderDTO> getPendingOrders() {
+        DataSourceRouting.Route route = readYourWritesTracker.mustReadListsFromPrimary()
+                ? DataSourceRouting.Route.PRIMARY
+                : DataSourceRouting.Route.REPLICA;
+        return pendingOrdersFlight.execute(StoreContext.current() + "/" + route, () -> DataSourceRouting.on(route,
+                () -> Collections.unmodifiableList(delegate.getPendingOrders())));
+    }
+
+    /**
+     * Retrieves an order by its code, sharing the query in flight for the same code if there is one.
+     *
+     * @param code The unique order code.
+     * @return The DTO of the order corresponding to the code.
+     */
+    @Override
+    public OrderDTO getOrderByCode(String code) {
+        String store = StoreContext.current();
+        if (readYourWritesTracker.mustReadFromPrimary(store, code)) {
+            return orderByCodeFlight.execute(PRIMARY_PREFIX + store + "/" + code,
+                    () -> DataSourceRouting.on(DataSourceRouting.Route.PRIMARY, () -> delegate.getOrderByCode(code)));
+        }
+        return orderByCodeFlight.execute(store + "/" + code, () -> delegate.getOrderByCode(code));
+    }
+
+    /**
+     * Retrieves the version of an order, from the primary if the order changed recently on this node.
+     *
+     * @param code The unique order code.
+     * @return The version of the order, or an empty Optional if the order is not found.
+     */
+    @Override
+    public Optional<Long> getOrderVersion(String code) {
+        if (readYourWritesTracker.mustReadFromPrimary(StoreContext.current(), code)) {
+            return DataSourceRouting.on(DataSourceRouting.Route.PRIMARY, () -> delegate.getOrderVersion(code));
+        }
+        return delegate.getOrderVersion(code);
+    }
+
+    /**
+     * Searches the orders by the content of their description, without coalescing.
+     *
+     * @param text The searched text.
+     * @param page The index of the page, starting from 0.
+     * @param size The number of orders per page.
+     * @return The page of the matching orders, ranked by relevance.
+     */
+    @Override
+    public OrderSearchResultDTO searchOrders(String text, int page, int size) {
+        return delegate.searchOrders(text, page, size); // Searches are rarely identical, nothing to coalesce
+    }
+
+    /**
+     * Exposes the number of executed and collapsed reads as "pizzaparty.reads.coalesced" counters.
+     *
+     * @param registry The registry the counters are bound to.
+     */
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bindCounters(registry, "pending-orders", pendingOrdersFlight);
+        bindCounters(registry, "order-by-code", orderByCodeFlight);
+    }
+
+    private static void bindCounters(MeterRegistry registry, String operation, SingleFlight<?, ?> flight) {
+        FunctionCounter.builder("pizzaparty.reads.coalesced", flight, SingleFlight::getExecutedCount)
+                .description("Reads executed against the database")
+                .tag("operation", operation)
+                .tag("outcome", "executed")
+                .register(registry);
+        FunctionCounter.builder("pizzaparty.reads.coalesced", flight, SingleFlight::getCollapsedCount)
+                .description("Reads served by an identical read already in flight")
+                .tag("operation", operation)
+                .tag("outcome", "collapsed")
+                .register(registry);
+    }
+}
@@ -0,0 +1,208 @@
+package com.pizzaparty.service;
+
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.Utils;
+import com.pizzaparty.repository.EdgeOrder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind of the edge storage mode: writes the order changes made by {@link EdgeOrderServiceImpl}
+ * to the database in batches, one transaction per store, and retries as long as the database is unreachable.
+ * Only the last state of each order is written, however many changes it went through in the meantime.
+ * <p>
+ * Each inserted order is recorded in the "idempotency_record" table under a key made of the node and the local ID,
+ * in the same transaction. An insert whose acknowledgment was lost (e.g. the kiosk stopped right after the commit)
+ * is recognized by its key when it is written again, instead of being taken for a code collision.
+ * An order whose code was taken in the meantime (by another node of the store) gets the next free code of its day.
+ */
+@Service
+@ConditionalOnProperty(name = "pizzaparty.storage.mode", havingValue = "edge")
+public class EdgeOrderFlusher {
+
+    private static final Logger logger = LoggerFactory.getLogger(EdgeOrderFlusher.class);
+
+    // Keeps the orders already in the database, whoever inserted them. The only conflict possible is on
+    // (store, order_code), the ID being generated; without a conflict target, the statement also runs on H2 (tests)
+    private static final String INSERT_ORDER = "INSERT INTO \"order\" (store, order_code, description, status, version,"
+            + " preparation_started_at) VALUES (?, ?, ?, ?, ?, ?) ON CONFLICT DO NOTHING";
+
+    private static final String INSERT_KEY = "INSERT INTO idempotency_record (idempotency_key, store, principal, order_id, order_code,"
+            + " description, status, created_at) SELECT ?, store, ?, id, order_code, description, status, now()"
+            + " FROM \"order\" WHERE store = ? AND order_code = ?";
+
+    private static final String FIND_KEYS = "SELECT idempotency_key, order_code FROM idempotency_record"
+            + " WHERE store = ? AND idempotency_key = ANY (?)";
+
+    private static final String UPDATE_ORDER = "UPDATE \"order\" SET status = ?, version = ?, preparation_started_at = ?"
+            + " WHERE store = ? AND order_code = ?";
+
+    // Highest counter of the codes of a day (COD-ddMMyyyy-NNNN, the counter starts at the 14th character)
+    private static final String LAST_COUNTER = "SELECT max(substring(order_code from 14)::int) FROM \"order\""
+            + " WHERE store = ? AND order_code LIKE ?";
+
+    private final EdgeOrderServiceImpl edgeOrderService;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final String nodeId;
+
+    private final int batchSize;
+
+    // Whether the last flush reached the database, to log only the changes of connectivity
+    private volatile boolean connected = true;
+
+    public EdgeOrderFlusher(EdgeOrderServiceImpl edgeOrderService,
+                            JdbcTemplate jdbcTemplate,
+                            TransactionTemplate transactionTemplate,
+                            @Value("${pizzaparty.storage.edge.node-id}") String nodeId,
+                            @Value("${pizzaparty.storage.edge.batch-size:500}") int batchSize) {
+        this.edgeOrderService = edgeOrderService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.nodeId = nodeId;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Writes the pending order changes, batch after batch, until none is left or the database cannot be reached.
+     * The changes that cannot be written stay in the journal for the next attempt.
+     */
+    @Scheduled(fixedDelayString = "${pizzaparty.storage.edge.flush-interval:PT2S}")
+    public void flush() {
+        List<EdgeOrder> batch;
+        do {
+            batch = edgeOrderService.getPendingChanges(batchSize);
+            Map<String, List<EdgeOrder>> byStore = batch.stream()
+                    .collect(Collectors.groupingBy(EdgeOrder::store, LinkedHashMap::new, Collectors.toList()));
+            for (Map.Entry<String, List<EdgeOrder>> storeOrders : byStore.entrySet()) {
+                Map<Long, String> renamedCodes;
+                try {
+                    // On the shard of the store
+                    renamedCodes = StoreContext.on(storeOrders.getKey(),
+                            () -> transactionTemplate.execute(status -> write(storeOrders.getKey(), storeOrders.getValue())));
+                } catch (RuntimeException ex) {
+                    if (connected) {
+                        logger.warn("Unable to write the order changes to the database, they are kept in the edge journal: {}", ex.getMessage());
+                        connected = false;
+                    }
+                    return;
+                }
+                if (!connected) {
+                    logger.info("Database reachable again, writing the order changes kept in the edge journal");
+                    connected = true;
+                }
+                edgeOrderService.acknowledge(storeOrders.getValue(), renamedCodes);
+            }
+        } while (batch.size() == batchSize);
+    }
+
+    // Writes the last changes when the application stops, if the database is reachable
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    // Writes the orders of a store in the current transaction; returns the new code of the renamed orders
+    private Map<Long, String> write(String store, List<EdgeOrder> orders) {
+        Map<Long, String> renamedCodes = new HashMap<>();
+        List<EdgeOrder> toInsert = new ArrayList<>();
+        List<EdgeOrder> toUpdate = new ArrayList<>();
+        for (EdgeOrder order : orders) {
+            (order.inserted() ? toUpdate : toInsert).add(order);
+        }
+
+        // Orders inserted by a previous flush whose acknowledgment was lost: only their status may have to be updated
+        if (!toInsert.isEmpty()) {
+            Map<String, String> recordedCodes = new HashMap<>();
+            String[] keys = toInsert.stream().map(this::key).toArray(String[]::new);
+            jdbcTemplate.query(FIND_KEYS, (RowCallbackHandler) rs -> recordedCodes.put(rs.getString(1), rs.getString(2)), store, keys);
+            toInsert.removeIf(order -> {
+                String recordedCode = recordedCodes.get(key(order));
+                if (recordedCode == null) {
+                    return false;
+                }
+                if (!recordedCode.equals(order.orderCode())) {
+                    renamedCodes.put(order.id(), recordedCode);
+                }
+                toUpdate.add(order);
+                return true;
+            });
+        }
+
+        int[][] inserted = jdbcTemplate.batchUpdate(INSERT_ORDER, toInsert, batchSize, (ps, order) -> {
+            ps.setString(1, store);
+            ps.setString(2, order.orderCode());
+            ps.setString(3, order.description());
+            ps.setString(4, order.status().name());
+            ps.setLong(5, order.version());
+            ps.setTimestamp(6, order.preparationStartedAt() == null ? null : Timestamp.from(order.preparationStartedAt()));
+        });
+        int index = 0;
+        for (int[] counts : inserted) {
+            for (int count : counts) {
+                EdgeOrder order = toInsert.get(index++);
+                if (count == 0) {
+                    renamedCodes.put(order.id(), insertWithNextCode(store, order));  // The code is taken
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate(INSERT_KEY, toInsert, batchSize, (ps, order) -> {
+            ps.setString(1, key(order));
+            ps.setString(2, "edge/" + nodeId);  // Never sent by a user, so never replayed to one
+            ps.setString(3, store);
+            ps.setString(4, renamedCodes.getOrDefault(order.id(), order.orderCode()));
+        });
+
+        jdbcTemplate.batchUpdate(UPDATE_ORDER, toUpdate, batchSize, (ps, order) -> {
+            ps.setString(1, order.status().name());
+            ps.setLong(2, order.version());
+            ps.setTimestamp(3, order.preparationStartedAt() == null ? null : Timestamp.from(order.preparationStartedAt()));
+            ps.setString(4, store);
+            ps.setString(5, renamedCodes.getOrDefault(order.id(), order.orderCode()));
+        });
+        logger.debug("Wrote {} new and {} changed orders of store {}", toInsert.size(), toUpdate.size(), store);
+        return renamedCodes;
+    }
+
+    // Inserts an order with the first free code of its day, after the highest one in the database
+    private String insertWithNextCode(String store, EdgeOrder order) {
+        LocalDate day = Utils.parseOrderDate(order.orderCode());
+        String prefix = Utils.generateOrderCode(day, 0).replaceFirst("0+$", "");  // COD-ddMMyyyy-
+        Integer last = jdbcTemplate.queryForObject(LAST_COUNTER, Integer.class, store, prefix + "%");
+        int counter = last == null ? 1 : last + 1;
+        while (true) {
+            String orderCode = Utils.generateOrderCode(day, counter);
+            int count = jdbcTemplate.update(INSERT_ORDER, store, orderCode, order.description(), order.status().name(),
+                    order.version(), order.preparationStartedAt() == null ? null : Timestamp.from(order.preparationStartedAt()));
+            if (count == 1) {
+                return orderCode;
+            }
+            counter++;  // Taken concurrently by another node
+        }
+    }
+
+    // Idempotency key of the insert of an order, unique across the kiosks
+    private String key(EdgeOrder order) {
+        return "edge/" + nodeId + "/" + (-order.id());
+    }
+}
@@ -0,0 +1,340 @@
+package com.pizzaparty.service;
+
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.StoreRegistry;
+import com.pizzaparty.config.Utils;
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.dto.OrderSearchResultDTO;
+import com.pizzaparty.entity.Order;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.event.OrderChangedEvent;
+import com.pizzaparty.exceptions.OrderInvalidStateException;
+import com.pizzaparty.exceptions.OrderNotFoundException;
+import com.pizzaparty.repository.EdgeOrder;
+import com.pizzaparty.repository.EdgeOrderJournal;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Primary;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Order service of the edge storage mode (pizzaparty.storage.mode=edge), for in-store kiosks whose link to the
+ * database is unreliable. The active orders of the kiosk live in memory and every operation on them is served
+ * locally, whether the database is reachable or not; each change is recorded in the local journal
+ * ({@link EdgeOrderJournal}) before it is acknowledged, and written to the database later by {@link EdgeOrderFlusher}.
+ * <p>
+ * The kiosk is expected to be the only one handling the active orders of its stores: the preparation limit and
+ * the code counters are checked against the orders in memory only. Codes that turn out to be already taken
+ * in the database are changed when the order is written; the order can still be read by its original code
+ * as long as it is in memory. Completed orders leave the memory once written, after which they are read
+ * from the database, like the search.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "pizzaparty.storage.mode", havingValue = "edge")
+public class EdgeOrderServiceImpl implements OrderService, MeterBinder {
+
+    private static final Logger logger = LoggerFactory.getLogger(EdgeOrderServiceImpl.class);
+
+    private final OrderServiceImpl database;
+
+    private final EdgeOrderJournal journal;
+
+    private final StoreRegistry storeRegistry;
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Guards the state below. A kiosk handles few orders, and each change waits for the disk anyway
+    private final Object lock = new Object();
+
+    // Orders in memory by local ID
+    private final Map<Long, EdgeOrder> orders = new HashMap<>();
+
+    // Local ID of the orders by "store/code", for both the current and the original code of the orders
+    private final Map<String, Long> idsByCode = new HashMap<>();
+
+    // Code counter of each store
+    private final Map<String, EdgeOrderJournal.CodeCounter> codeCounters = new HashMap<>();
+
+    // Last local ID assigned, as a positive number
+    private long lastId;
+
+    public EdgeOrderServiceImpl(OrderServiceImpl database, EdgeOrderJournal journal, StoreRegistry storeRegistry,
+                                ApplicationEventPublisher eventPublisher) {
+        this.database = database;
+        this.journal = journal;
+        this.storeRegistry = storeRegistry;
+        this.eventPublisher = eventPublisher;
+    }
+
+    // Restores the orders and counters of the journal, e.g. after a restart without link to the database
+    @PostConstruct
+    void load() {
+        synchronized (lock) {
+            for (EdgeOrderJournal.Entry entry : journal.read()) {
+                if (entry instanceof EdgeOrderJournal.Checkpoint checkpoint) {
+                    lastId = Math.max(lastId, checkpoint.lastId());
+                    codeCounters.putAll(checkpoint.codeCounters());
+                } else if (entry instanceof EdgeOrder order) {
+                    put(order);
+                    lastId = Math.max(lastId, -order.id());
+                    advanceCounter(order.store(), order.orderCode());
+                }
+            }
+            orders.values().removeIf(order -> !order.pending() && order.status() == OrderStatusEnum.READY);
+            idsByCode.values().removeIf(id -> !orders.containsKey(id));
+            compact();
+            logger.info("Restored {} orders from the edge journal, {} of them to write to the database", orders.size(), countPending());
+        }
+    }
+
+    /**
+     * Creates a new order in the current store, with the next code of the counter of the store.
+     *
+     * @param description The description of the order to create.
+     * @return The DTO of the newly created order.
+     * @throws IllegalArgumentException If the description is empty or too long.
+     */
+    @Override
+    public OrderDTO createOrder(String description) {
+        if (description == null || description.isEmpty() || description.length() > Order.MAX_DESCRIPTION_LENGTH) {
+            throw new IllegalArgumentException("The description must be between 1 and " + Order.MAX_DESCRIPTION_LENGTH + " characters");
+        }
+        String store = StoreContext.current();
+        LocalDate today = LocalDate.now();
+        EdgeOrder order;
+        synchronized (lock) {
+            EdgeOrderJournal.CodeCounter counter = codeCounters.get(store);
+            int next = counter != null && counter.day().equals(today) ? counter.lastCounter() : 0;
+            String orderCode;
+            do {
+                next++;
+                orderCode = Utils.generateOrderCode(today, next);
+            } while (idsByCode.containsKey(store + "/" + orderCode));  // Skip the original codes of renamed orders
+
+            order = new EdgeOrder(-(lastId + 1), store, orderCode, orderCode, description, OrderStatusEnum.WAITING,
+                    0, null, false, true);
+            journal.append(order);  // Nothing changes in memory if the journal cannot be written
+            lastId++;
+            codeCounters.put(store, new EdgeOrderJournal.CodeCounter(today, next));
+            put(order);
+        }
+        eventPublisher.publishEvent(new OrderChangedEvent(store, order.id(), order.orderCode(), null, order.status(), null));
+        return order.toDTO();
+    }
+
+    /**
+     * Takes charge of a waiting order of the current store, within the preparation limit of the store.
+     *
+     * @param id The local ID of the order.
+     * @return The DTO of the order in preparation.
+     */
+    @Override
+    public OrderDTO takeCharge(Long id) {
+        EdgeOrder updated;
+        synchronized (lock) {
+            EdgeOrder order = findInCurrentStore(id);
+            if (order.status() != OrderStatusEnum.WAITING) {
+                throw new OrderInvalidStateException("Order with ID " + id + " cannot be taken charge of. Current status: " + order.status());
+            }
+            int preparationLimit = storeRegistry.getPreparationLimit(order.store());
+            long inPreparation = orders.values().stream()
+                    .filter(other -> other.store().equals(order.store()) && other.status() == OrderStatusEnum.PREPARATION)
+                    .count();
+            if (inPreparation >= preparationLimit) {
+                throw OrderServiceImpl.preparationLimitReached(preparationLimit);
+            }
+            updated = change(order.withStatus(OrderStatusEnum.PREPARATION, Instant.now()));
+        }
+        eventPublisher.publishEvent(new OrderChangedEvent(updated.store(), id, updated.orderCode(),
+                OrderStatusEnum.WAITING, OrderStatusEnum.PREPARATION, null));
+        return updated.toDTO();
+    }
+
+    /**
+     * Completes an order of the current store in preparation.
+     *
+     * @param id The local ID of the order.
+     * @return The DTO of the completed order.
+     */
+    @Override
+    public OrderDTO completeOrder(Long id) {
+        EdgeOrder updated;
+        synchronized (lock) {
+            EdgeOrder order = findInCurrentStore(id);
+            if (order.status() != OrderStatusEnum.PREPARATION) {
+                throw new OrderInvalidStateException("Order with ID " + id + " cannot be completed. Current status: " + order.status());
+            }
+            updated = change(order.withStatus(OrderStatusEnum.READY, order.preparationStartedAt()));
+        }
+        Duration preparationTime = updated.preparationStartedAt() == null
+                ? null
+                : Duration.between(updated.preparationStartedAt(), Instant.now());
+        eventPublisher.publishEvent(new OrderChangedEvent(updated.store(), id, updated.orderCode(),
+                OrderStatusEnum.PREPARATION, OrderStatusEnum.READY, preparationTime));
+        return updated.toDTO();
+    }
+
+    /**
+     * @return The waiting orders of the current store, in the order in which they were created.
+     */
+    @Override
+    public List<OrderDTO> getPendingOrders() {
+        String store = StoreContext.current();
+        synchronized (lock) {
+            return orders.values().stream()
+                    .filter(order -> order.store().equals(store) && order.status() == OrderStatusEnum.WAITING)
+                    .sorted(Comparator.comparingLong(EdgeOrder::id).reversed())  // -1, -2, ...
+                    .map(EdgeOrder::toDTO)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Retrieves an order by its current or original code, from the memory or else from the database.
+     *
+     * @param code The code of the order.
+     * @return The DTO of the order.
+     */
+    @Override
+    public OrderDTO getOrderByCode(String code) {
+        return findByCode(code).map(EdgeOrder::toDTO).orElseGet(() -> database.getOrderByCode(code));
+    }
+
+    @Override
+    public Optional<Long> getOrderVersion(String code) {
+        Optional<EdgeOrder> order = findByCode(code);
+        return order.isPresent() ? order.map(EdgeOrder::version) : database.getOrderVersion(code);
+    }
+
+    // Full-text search needs the database
+    @Override
+    public OrderSearchResultDTO searchOrders(String text, int page, int size) {
+        return database.searchOrders(text, page, size);
+    }
+
+    /**
+     * @param max The maximum number of orders returned.
+     * @return The orders whose last change is not written to the database yet, oldest first.
+     */
+    List<EdgeOrder> getPendingChanges(int max) {
+        synchronized (lock) {
+            return orders.values().stream()
+                    .filter(EdgeOrder::pending)
+                    .sorted(Comparator.comparingLong(EdgeOrder::id).reversed())
+                    .limit(max)
+                    .collect(Collectors.toList());
+        }
+    }
+
+    /**
+     * Records that orders were written to the database, and rewrites the journal without the completed orders.
+     *
+     * @param written The states that were written.
+     * @param renamedCodes The new code of the orders whose code was already taken in the database, by local ID.
+     */
+    void acknowledge(List<EdgeOrder> written, Map<Long, String> renamedCodes) {
+        synchronized (lock) {
+            for (EdgeOrder state : written) {
+                EdgeOrder current = orders.get(state.id());
+                if (current == null) {
+                    continue;
+                }
+                String code = renamedCodes.getOrDefault(state.id(), current.orderCode());
+                if (!code.equals(current.orderCode())) {
+                    logger.info("Order {} of store {} renamed {} because its code was taken in the database",
+                            current.orderCode(), current.store(), code);
+                    advanceCounter(current.store(), code);
+                }
+                EdgeOrder updated = current.written(state.version(), code);
+                if (!updated.pending() && updated.status() == OrderStatusEnum.READY) {
+                    remove(updated);  // Now read from the database
+                } else {
+                    put(updated);
+                }
+            }
+            compact();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("pizzaparty.edge.pending", this, EdgeOrderServiceImpl::countPending)
+                .description("Orders whose last change is not written to the database yet")
+                .register(registry);
+    }
+
+    private long countPending() {
+        synchronized (lock) {
+            return orders.values().stream().filter(EdgeOrder::pending).count();
+        }
+    }
+
+    private EdgeOrder findInCurrentStore(Long id) {
+        EdgeOrder order = orders.get(id);
+        if (order == null || !order.store().equals(StoreContext.current())) {
+            throw new OrderNotFoundException("Order with ID " + id + " not found");
+        }
+        return order;
+    }
+
+    private Optional<EdgeOrder> findByCode(String code) {
+        synchronized (lock) {
+            return Optional.ofNullable(idsByCode.get(StoreContext.current() + "/" + code)).map(orders::get);
+        }
+    }
+
+    // Records a change in the journal, then in memory
+    private EdgeOrder change(EdgeOrder order) {
+        journal.append(order);
+        put(order);
+        return order;
+    }
+
+    private void put(EdgeOrder order) {
+        orders.put(order.id(), order);
+        idsByCode.put(order.store() + "/" + order.orderCode(), order.id());
+        idsByCode.put(order.store() + "/" + order.originalCode(), order.id());
+    }
+
+    private void remove(EdgeOrder order) {
+        orders.remove(order.id());
+        idsByCode.remove(order.store() + "/" + order.orderCode());
+        idsByCode.remove(order.store() + "/" + order.originalCode());
+    }
+
+    // Keeps the counter of a store beyond a code of the current day, so that it is not generated again
+    private void advanceCounter(String store, String orderCode) {
+        LocalDate day = Utils.parseOrderDate(orderCode);
+        int counter = Integer.parseInt(orderCode.substring(orderCode.lastIndexOf('-') + 1));
+        EdgeOrderJournal.CodeCounter current = codeCounters.get(store);
+        if (current == null || day.isAfter(current.day()) || (day.equals(current.day()) && counter > current.lastCounter())) {
+            codeCounters.put(store, new EdgeOrderJournal.CodeCounter(day, counter));
+        }
+    }
+
+    // Rewrites the journal with the counters and the orders in memory only
+    private void compact() {
+        List<EdgeOrderJournal.Entry> entries = new ArrayList<>();
+        entries.add(new EdgeOrderJournal.Checkpoint(lastId, Map.copyOf(codeCounters)));
+        entries.addAll(orders.values());
+        journal.rewrite(entries);
+    }
+}
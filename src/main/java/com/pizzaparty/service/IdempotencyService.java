@@ -0,0 +1,28 @@
+package com.pizzaparty.service;
+
+import com.pizzaparty.dto.OrderDTO;
+
+/**
+ * Interface that defines the methods for creating orders idempotently,
+ * so that client retries carrying the same Idempotency-Key never produce duplicate orders.
+ */
+public interface IdempotencyService {
+
+    /**
+     * Creates a new order, or returns the order already created for the same idempotency key.
+     * Concurrent requests with the same key are collapsed into a single creation.
+     * Keys belong to the user who sent them first: another user cannot get the order back with the same key.
+     *
+     * @param principal The name of the authenticated user sending the request.
+     * @param idempotencyKey The key sent by the client in the Idempotency-Key header.
+     * @param description The description of the order to be created.
+     * @return The DTO representing the order created by the first request with this key.
+     * @throws IllegalArgumentException If the key is invalid or was already used for a different description or by another user.
+     */
+    OrderDTO createOrder(String principal, String idempotencyKey, String description);
+
+    /**
+     * Deletes the durable idempotency records older than the configured retention.
+     */
+    void purgeExpiredKeys();
+}
@@ -0,0 +1,175 @@
+package com.pizzaparty.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.StoreRegistry;
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.entity.IdempotencyRecord;
+import com.pizzaparty.repository.IdempotencyRecordRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Implementation of the service for creating orders idempotently.
+ * Keys are first resolved against a bounded in-memory cache, which also collapses concurrent
+ * duplicates into a single execution; the "idempotency_record" table covers retries that land on another node.
+ * Keys are scoped by store, and a key is only replayed to the user who sent it.
+ * Keys are rejected by the edge storage mode: its orders only reach the database later, so the record of a key
+ * could not be saved with its order (see EdgeOrderFlusher).
+ */
+@Service
+public class IdempotencyServiceImpl implements IdempotencyService {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdempotencyServiceImpl.class);
+
+    // Maximum length accepted for a key, matching the size of the idempotency_key column
+    static final int MAX_KEY_LENGTH = 255;
+
+    private final OrderService orderService;
+
+    private final IdempotencyRecordRepository idempotencyRecordRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final StoreRegistry storeRegistry;
+
+    private final Duration retention;
+
+    // Whether the orders are created by the edge storage mode (EdgeOrderServiceImpl)
+    private final boolean edgeStorage;
+
+    // In-flight and completed creations by store, user and key; a pending future is shared by all concurrent duplicates
+    private final Cache<RecentKey, CompletableFuture<OrderDTO>> recentKeys;
+
+    public IdempotencyServiceImpl(OrderService orderService,
+                                  IdempotencyRecordRepository idempotencyRecordRepository,
+                                  TransactionTemplate transactionTemplate,
+                                  StoreRegistry storeRegistry,
+                                  @Value("${pizzaparty.idempotency.max-entries:10000}") long maxEntries,
+                                  @Value("${pizzaparty.idempotency.ttl:10m}") Duration ttl,
+                                  @Value("${pizzaparty.idempotency.retention:24h}") Duration retention,
+                                  @Value("${pizzaparty.storage.mode:database}") String storageMode) {
+        this.orderService = orderService;
+        this.idempotencyRecordRepository = idempotencyRecordRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.storeRegistry = storeRegistry;
+        this.retention = retention;
+        this.edgeStorage = "edge".equals(storageMode);
+        this.recentKeys = Caffeine.newBuilder()
+                .maximumSize(maxEntries) // Bound the memory used by the cache
+                .expireAfterWrite(ttl) // Evict keys once the retry window is over
+                .build();
+    }
+
+    /**
+     * Creates a new order, or returns the order already created for the same idempotency key.
+     * The first request with a key executes the creation; concurrent duplicates wait for its result,
+     * and later replays are answered from memory without touching the database.
+     *
+     * @param principal The name of the authenticated user sending the request.
+     * @param idempotencyKey The key sent by the client in the Idempotency-Key header.
+     * @param description The description of the order to be created.
+     * @return The DTO representing the order created by the first request with this key.
+     */
+    @Override
+    public OrderDTO createOrder(String principal, String idempotencyKey, String description) {
+        if (idempotencyKey.isBlank() || idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Idempotency-Key must be between 1 and " + MAX_KEY_LENGTH + " characters");
+        }
+        if (edgeStorage) {
+            // Rejected before any order is created, so that a retry cannot create a duplicate
+            throw new IllegalArgumentException("Idempotency-Key is not supported by this node (edge storage mode)");
+        }
+
+        RecentKey cacheKey = new RecentKey(StoreContext.current(), principal, idempotencyKey);
+        CompletableFuture<OrderDTO> execution = new CompletableFuture<>();
+        CompletableFuture<OrderDTO> existing = recentKeys.asMap().putIfAbsent(cacheKey, execution);
+        if (existing != null) {
+            // Another request with the same key is running or has completed: share its outcome
+            return checkSameRequest(idempotencyKey, description, SingleFlight.join(existing));
+        }
+
+        try {
+            OrderDTO orderDTO = createOnce(principal, idempotencyKey, description);
+            execution.complete(orderDTO);
+            return checkSameRequest(idempotencyKey, description, orderDTO);
+        } catch (Throwable ex) {
+            // Forget the failed execution so that the client can retry with the same key; errors too, so that no duplicate waits forever
+            recentKeys.asMap().remove(cacheKey, execution);
+            execution.completeExceptionally(ex);
+            throw ex;
+        }
+    }
+
+    /**
+     * Deletes the durable idempotency records older than the configured retention, store by store.
+     * Runs periodically so that the table does not grow without bounds.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${pizzaparty.idempotency.purge-interval:PT1H}")
+    public void purgeExpiredKeys() {
+        Instant cutoff = Instant.now().minus(retention);
+        for (String store : storeRegistry.getStores()) {
+            // Each store in its own transaction, on the shard of the store
+            Integer deleted = StoreContext.on(store, () -> transactionTemplate.execute(
+                    status -> idempotencyRecordRepository.deleteByStoreAndCreatedBefore(store, cutoff)));
+            logger.debug("Purged {} expired idempotency keys of store {}", deleted, store);
+        }
+    }
+
+    /**
+     * Resolves the key against the durable table and creates the order if the key is new.
+     * The order and its idempotency record are saved in the same transaction.
+     */
+    private OrderDTO createOnce(String principal, String idempotencyKey, String description) {
+        IdempotencyRecord.Key recordKey = new IdempotencyRecord.Key(StoreContext.current(), idempotencyKey);
+        try {
+            return transactionTemplate.execute(status -> idempotencyRecordRepository.findById(recordKey)
+                    .map(record -> toDTO(principal, idempotencyKey, record)) // The key was already used, possibly on another node
+                    .orElseGet(() -> {
+                        OrderDTO orderDTO = orderService.createOrder(description);
+                        idempotencyRecordRepository.saveAndFlush(new IdempotencyRecord(idempotencyKey, orderDTO.getStore(), principal,
+                                orderDTO.getId(), orderDTO.getOrderCode(), orderDTO.getDescription(), orderDTO.getStatus(), Instant.now()));
+                        return orderDTO;
+                    }));
+        } catch (DataIntegrityViolationException ex) {
+            // Another node committed the same key first: our order was rolled back, return the winner's one
+            return idempotencyRecordRepository.findById(recordKey)
+                    .map(record -> toDTO(principal, idempotencyKey, record))
+                    .orElseThrow(() -> ex);
+        }
+    }
+
+    /**
+     * Verifies that a replayed key carries the same request as the one that created the order.
+     */
+    private OrderDTO checkSameRequest(String idempotencyKey, String description, OrderDTO orderDTO) {
+        if (!orderDTO.getDescription().equals(description)) {
+            throw new IllegalArgumentException("Idempotency-Key " + idempotencyKey + " was already used for a different order");
+        }
+        return orderDTO;
+    }
+
+    // Maps an IdempotencyRecord -> OrderDTO as it was returned to the original request
+    private OrderDTO toDTO(String principal, String idempotencyKey, IdempotencyRecord record) {
+        if (!record.getPrincipal().equals(principal)) {
+            // Another user used the key first in this store: never disclose its order
+            throw new IllegalArgumentException("Idempotency-Key " + idempotencyKey + " was already used for a different order");
+        }
+        return new OrderDTO(record.getOrderId(), record.getStore(), record.getOrderCode(), record.getDescription(), record.getStatus());
+    }
+
+    // Key of the recent creations: keys are scoped by store and by user
+    private record RecentKey(String store, String principal, String idempotencyKey) {
+    }
+}
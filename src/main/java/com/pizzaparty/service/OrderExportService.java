@@ -0,0 +1,30 @@
+package com.pizzaparty.service;
+
+import com.pizzaparty.enumeration.ExportFormatEnum;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+
+/**
+ * Interface that defines the bulk export of the orders.
+ * The rows are streamed from the database to the output as they are read, without loading the orders in memory.
+ */
+public interface OrderExportService {
+
+    /**
+     * Writes the orders of a range of days, optionally with a given status, to a stream.
+     * The day of an order is the one contained in its code; the orders are written in no particular order.
+     *
+     * @param format The format of the export.
+     * @param from The first day, included, or null for no lower bound.
+     * @param to The last day, included, or null for no upper bound.
+     * @param status The status of the exported orders, or null for all the statuses.
+     * @param out The stream to write to; it is flushed but not closed.
+     * @return The number of exported orders.
+     * @throws IOException If the stream cannot be written, e.g. because the client went away.
+     * @throws IllegalArgumentException If the range is empty.
+     */
+    long exportOrders(ExportFormatEnum format, LocalDate from, LocalDate to, OrderStatusEnum status, OutputStream out) throws IOException;
+}
@@ -0,0 +1,113 @@
+package com.pizzaparty.service;
+
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.enumeration.ExportFormatEnum;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Implementation of the order export based on PostgreSQL COPY ... TO STDOUT.
+ * The driver hands each row to the output stream as soon as it arrives, so the memory used does not depend
+ * on the number of orders; entities, persistence context and DTOs are bypassed entirely.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderExportServiceImpl implements OrderExportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderExportServiceImpl.class);
+
+    // Day of the order code (COD-ddMMyyyy-NNNN) rearranged as yyyyMMdd, so that ranges compare as strings.
+    // Immutable, unlike to_date, so that it can be indexed (see idx_order_code_day in create_schema.sql)
+    private static final String ORDER_DAY = "(substring(order_code, 9, 4) || substring(order_code, 7, 2) || substring(order_code, 5, 2))";
+
+    // Groups the small per-row writes of the driver before they reach the compressor or the response
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional(readOnly = true) // Runs on the replica when one is configured
+    public long exportOrders(ExportFormatEnum format, LocalDate from, LocalDate to, OrderStatusEnum status, OutputStream out) throws IOException {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("The first day must not be after the last day");
+        }
+        String store = StoreContext.current();
+        String sql = buildCopySql(store, from, to, status);
+        long start = System.nanoTime();
+        try {
+            long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+                try {
+                    return copy(copyManager, sql, format, out);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            logger.info("Exported {} orders of store {} in {} ms", rows, store, (System.nanoTime() - start) / 1_000_000);
+            return rows;
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    private static long copy(CopyManager copyManager, String sql, ExportFormatEnum format, OutputStream out) throws IOException, SQLException {
+        GZIPOutputStream gzip = format == ExportFormatEnum.CSV_GZIP ? new GZIPOutputStream(out, BUFFER_SIZE) : null;
+        BufferedOutputStream buffered = new BufferedOutputStream(gzip != null ? gzip : out, BUFFER_SIZE);
+        long rows = copyManager.copyOut(sql, buffered);
+        buffered.flush();
+        if (gzip != null) {
+            gzip.finish(); // Writes the gzip trailer without closing the underlying stream
+        }
+        out.flush();
+        return rows;
+    }
+
+    /**
+     * Builds the COPY statement of an export.
+     * COPY does not accept bind parameters: the filters are inlined, which is safe because they are
+     * formatted from a LocalDate and an enum constant, never from the raw request, and the store name
+     * is checked against the configured stores.
+     *
+     * @param store The store of the exported orders.
+     * @param from The first day, included, or null for no lower bound.
+     * @param to The last day, included, or null for no upper bound.
+     * @param status The status of the exported orders, or null for all the statuses.
+     * @return The COPY statement.
+     */
+    public static String buildCopySql(String store, LocalDate from, LocalDate to, OrderStatusEnum status) {
+        List<String> conditions = new ArrayList<>();
+        conditions.add("store = '" + store + "'");
+        if (from != null) {
+            conditions.add(ORDER_DAY + " >= '" + from.format(DateTimeFormatter.BASIC_ISO_DATE) + "'");
+        }
+        if (to != null) {
+            conditions.add(ORDER_DAY + " <= '" + to.format(DateTimeFormatter.BASIC_ISO_DATE) + "'");
+        }
+        if (status != null) {
+            conditions.add("status = '" + status.name() + "'");
+        }
+        String where = " WHERE " + String.join(" AND ", conditions);
+        return "COPY (SELECT id, order_code, description, status, version, preparation_started_at"
+                + " FROM \"order\"" + where + ")" // No ORDER BY: the first rows are sent without waiting for a sort
+                + " TO STDOUT WITH (FORMAT csv, HEADER true)";
+    }
+}
@@ -0,0 +1,28 @@
+package com.pizzaparty.service;
+
+import com.pizzaparty.dto.OrderImportResultDTO;
+import com.pizzaparty.enumeration.ExportFormatEnum;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Interface that defines the bulk import of orders, e.g. to migrate a store or to replay
+ * the orders of a day in a test environment.
+ * The input is a file written by the export (see OrderExportService), streamed to the database as it is read.
+ */
+public interface OrderImportService {
+
+    /**
+     * Imports the orders of a file, keeping their codes.
+     * The import is all or nothing: if any order is not valid, nothing is imported.
+     * Orders whose code already exists are skipped. The daily statistics are updated with the imported orders.
+     *
+     * @param format The format of the file.
+     * @param in The content of the file; it is read to the end but not closed.
+     * @return The number of imported and skipped orders.
+     * @throws IOException If the file cannot be read.
+     * @throws IllegalArgumentException If some orders are not valid.
+     */
+    OrderImportResultDTO importOrders(ExportFormatEnum format, InputStream in) throws IOException;
+}
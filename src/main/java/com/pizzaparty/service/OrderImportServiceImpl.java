@@ -0,0 +1,161 @@
+package com.pizzaparty.service;
+
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.Utils;
+import com.pizzaparty.dto.OrderImportResultDTO;
+import com.pizzaparty.entity.Order;
+import com.pizzaparty.enumeration.ExportFormatEnum;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import lombok.RequiredArgsConstructor;
+import org.postgresql.PGConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Implementation of the order import based on PostgreSQL COPY ... FROM STDIN.
+ * The file is streamed into a temporary staging table, where PostgreSQL parses the CSV; the rows are then
+ * validated and moved to the order table with a single set-based statement. Nothing goes through Hibernate,
+ * so the import runs at COPY speed instead of one createOrder per order.
+ * <p>
+ * The orders are imported into the current store and keep their codes. The code counter of the store
+ * (order_code_sequence) is advanced to the highest imported code of the current day, so the next createOrder
+ * continues after it instead of probing the imported codes one by one.
+ * The IDs are assigned by the order table sequence, like for any other order.
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderImportServiceImpl implements OrderImportService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderImportServiceImpl.class);
+
+    // Maximum number of invalid lines reported in the error message
+    private static final int MAX_REPORTED_LINES = 10;
+
+    // Size of the chunks sent to the database
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // Maximum length of an order code (order_code VARCHAR(50) in create_schema.sql)
+    private static final int MAX_ORDER_CODE_LENGTH = 50;
+
+    // Columns of the export file, in order; the line number is assigned in the order of the file
+    private static final String CREATE_STAGING_TABLE = "CREATE TEMPORARY TABLE order_import ("
+            + "line BIGINT GENERATED ALWAYS AS IDENTITY, id TEXT, order_code TEXT, description TEXT, status TEXT,"
+            + " version TEXT, preparation_started_at TEXT) ON COMMIT DROP";
+
+    // HEADER MATCH rejects files whose columns are not the ones of the export
+    private static final String COPY_IN = "COPY order_import (id, order_code, description, status, version, preparation_started_at)"
+            + " FROM STDIN WITH (FORMAT csv, HEADER MATCH)";
+
+    /**
+     * Regular expression of a valid order code, COD-ddMMyyyy-NNNN, whose day exists: the 29th of February only
+     * in leap years, the 31st only in the months that have one. Understood alike by PostgreSQL and java.util.regex.
+     */
+    public static final String ORDER_CODE_REGEX = "^COD-("
+            + "(0[1-9]|1[0-9]|2[0-8])(0[1-9]|1[0-2])[0-9]{4}"                               // 1st to 28th of any month
+            + "|(29|30)(0[13-9]|1[0-2])[0-9]{4}"                                            // 29th and 30th except February
+            + "|31(0[13578]|1[02])[0-9]{4}"                                                 // 31st of the long months
+            + "|2902([0-9]{2}(0[48]|[2468][048]|[13579][26])|([02468][048]|[13579][26])00)" // 29th of February of leap years
+            + ")-[0-9]{4,}$";
+
+    // Same constraints as the Order entity and the order table: code COD-ddMMyyyy-NNNN of an existing day,
+    // description not empty and not longer than Order.MAX_DESCRIPTION_LENGTH, status one of OrderStatusEnum
+    private static final String INVALID_LINES = "SELECT line FROM order_import WHERE order_code IS NULL"
+            + " OR order_code !~ '" + ORDER_CODE_REGEX + "'"
+            + " OR length(order_code) > " + MAX_ORDER_CODE_LENGTH
+            + " OR description IS NULL OR description = '' OR length(description) > " + Order.MAX_DESCRIPTION_LENGTH
+            + " OR status IS NULL OR status NOT IN (" + Arrays.stream(OrderStatusEnum.values())
+                    .map(status -> "'" + status.name() + "'")
+                    .collect(Collectors.joining(", ")) + ")"
+            + " ORDER BY line LIMIT " + MAX_REPORTED_LINES;
+
+    // Inserts the new orders and adds them to the daily rollups (see OrderStatsServiceImpl) in the same statement.
+    // The imported orders get a new version; their preparation time is unknown, so it is not added to the rollups.
+    // The code counter of the store is advanced to the highest imported code of the current day, or kept if already
+    // past it; the counters of more than 9 digits do not fit the counter column and are never reached by createOrder.
+    // Parameters: the store, the store, the store, the current day and the current day formatted like in the codes
+    private static final String INSERT_ORDERS = "WITH inserted AS ("
+            + " INSERT INTO \"order\" (store, order_code, description, status, version, preparation_started_at)"
+            + " SELECT ?, order_code, description, status, 0, preparation_started_at::timestamptz FROM order_import ORDER BY line"
+            + " ON CONFLICT (store, order_code) DO NOTHING"
+            + " RETURNING order_code, status"
+            + "), rollup AS ("
+            + " INSERT INTO order_daily_stats (store, order_day, created_count, waiting_count, preparation_count, ready_count,"
+            + " preparation_time_total_ms, preparation_time_count)"
+            + " SELECT ?, to_date(substring(order_code, 5, 8), 'DDMMYYYY'), count(*),"
+            + " count(*) FILTER (WHERE status = 'WAITING'), count(*) FILTER (WHERE status = 'PREPARATION'),"
+            + " count(*) FILTER (WHERE status = 'READY'), 0, 0"
+            + " FROM inserted GROUP BY 2"
+            + " ON CONFLICT (store, order_day) DO UPDATE SET"
+            + " created_count = order_daily_stats.created_count + EXCLUDED.created_count,"
+            + " waiting_count = order_daily_stats.waiting_count + EXCLUDED.waiting_count,"
+            + " preparation_count = order_daily_stats.preparation_count + EXCLUDED.preparation_count,"
+            + " ready_count = order_daily_stats.ready_count + EXCLUDED.ready_count"
+            + "), sequence AS ("
+            + " INSERT INTO order_code_sequence (store, order_day, last_counter)"
+            + " SELECT ?, ?, max(substring(order_code from 14)::int)"
+            + " FROM inserted WHERE substring(order_code, 5, 8) = ? AND length(order_code) <= 22"
+            + " HAVING count(*) > 0"
+            + " ON CONFLICT (store) DO UPDATE SET"
+            + " last_counter = CASE WHEN order_code_sequence.order_day = EXCLUDED.order_day"
+            + " THEN greatest(order_code_sequence.last_counter, EXCLUDED.last_counter) ELSE EXCLUDED.last_counter END,"
+            + " order_day = EXCLUDED.order_day"
+            + ") SELECT count(*) FROM inserted";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    @Transactional // The staging table lives until the commit; any failure rolls back the whole import
+    public OrderImportResultDTO importOrders(ExportFormatEnum format, InputStream in) throws IOException {
+        String store = StoreContext.current();
+        long start = System.nanoTime();
+        jdbcTemplate.execute(CREATE_STAGING_TABLE);
+        long rows = copyIn(format, in);
+
+        List<Long> invalidLines = jdbcTemplate.queryForList(INVALID_LINES, Long.class);
+        if (!invalidLines.isEmpty()) {
+            // Line numbers of the file, whose first line is the header
+            throw new IllegalArgumentException("Invalid orders at lines " + invalidLines.stream()
+                    .map(line -> String.valueOf(line + 1))
+                    .collect(Collectors.joining(", "))
+                    + (invalidLines.size() == MAX_REPORTED_LINES ? " and possibly others" : "")
+                    + ": the code must be like COD-ddMMyyyy-0001, the description between 1 and "
+                    + Order.MAX_DESCRIPTION_LENGTH + " characters and the status one of " + Arrays.toString(OrderStatusEnum.values()));
+        }
+
+        LocalDate today = LocalDate.now();
+        Long imported = jdbcTemplate.queryForObject(INSERT_ORDERS, Long.class, store, store, store, today, Utils.formatOrderDate(today));
+        long inserted = imported != null ? imported : 0;
+        logger.info("Imported {} orders ({} skipped) into store {} in {} ms", inserted, rows - inserted, store, (System.nanoTime() - start) / 1_000_000);
+        return new OrderImportResultDTO(inserted, rows - inserted);
+    }
+
+    // Streams the file to the staging table, decompressing it on the fly if needed
+    private long copyIn(ExportFormatEnum format, InputStream in) throws IOException {
+        try {
+            Long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                try {
+                    InputStream source = format == ExportFormatEnum.CSV_GZIP ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+                    return connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_IN, source, BUFFER_SIZE);
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            });
+            return rows != null ? rows : 0;
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+}
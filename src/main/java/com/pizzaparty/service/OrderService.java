@@ -1,8 +1,10 @@
 package com.pizzaparty.service;
 
 import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.dto.OrderSearchResultDTO;
 
 import java.util.List;
+import java.util.Optional;
 
 /**
  * Interface that defines the methods for managing orders in the Pizza Party order management system.
@@ -47,4 +49,23 @@ public interface OrderService {
      * @return The DTO of the order corresponding to the provided code.
      */
     OrderDTO getOrderByCode(String code);
+
+    /**
+     * Returns the current version of an order given its identification code.
+     * This is much cheaper than loading the order and is used to answer conditional requests.
+     *
+     * @param code The identification code of the order.
+     * @return The version of the order, or an empty Optional if the order does not exist.
+     */
+    Optional<Long> getOrderVersion(String code);
+
+    /**
+     * Searches the orders by the content of their description, tolerating typos and partial words.
+     *
+     * @param text The searched text (e.g. "margherita senza glutine").
+     * @param page The index of the page, starting from 0.
+     * @param size The number of orders per page.
+     * @return The page of the matching orders, ranked by relevance.
+     */
+    OrderSearchResultDTO searchOrders(String text, int page, int size);
 }
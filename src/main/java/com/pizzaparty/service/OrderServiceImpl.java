@@ -1,86 +1,107 @@
 package com.pizzaparty.service;
 
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.StoreRegistry;
 import com.pizzaparty.config.Utils;
 import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.dto.OrderSearchResultDTO;
 import com.pizzaparty.entity.Order;
+import com.pizzaparty.entity.OrderCodeSequence;
 import com.pizzaparty.enumeration.OrderStatusEnum;
-import com.pizzaparty.exceptions.OrderAlreadyExistsException;
+import com.pizzaparty.event.OrderChangedEvent;
 import com.pizzaparty.exceptions.OrderAlreadyInPreparationException;
 import com.pizzaparty.exceptions.OrderInvalidStateException;
 import com.pizzaparty.exceptions.OrderNotFoundException;
 import com.pizzaparty.mapper.OrderMapper;
+import com.pizzaparty.repository.OrderCodeSequenceRepository;
 import com.pizzaparty.repository.OrderRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 /**
  * Implementation of the service for managing orders in the Pizza Party order management system.
  * Provides methods for creating, updating, and retrieving orders.
+ * Every method works on the orders of the current store (see StoreContext).
  */
 @Service
 @RequiredArgsConstructor
 public class OrderServiceImpl implements OrderService {
 
+    // Maximum length of a searched text
+    public static final int MAX_SEARCH_TEXT_LENGTH = 100;
+
+    // Maximum number of orders per page of search results
+    public static final int MAX_SEARCH_PAGE_SIZE = 100;
+
+    // Maximum number of matches ranked by a search, the most recent ones; later pages are empty
+    public static final int MAX_SEARCH_CANDIDATES = 1_000;
+
     private final OrderRepository orderRepository;
 
+    private final OrderCodeSequenceRepository orderCodeSequenceRepository;
+
+    private final StoreRegistry storeRegistry;
+
     private final OrderMapper orderMapper;
 
+    private final ApplicationEventPublisher eventPublisher;
+
     /**
-     * Creates a new order with a description, generating a unique order code
-     * based on the current date and a counter. If the date changes, the counter is reset.
-     * Verifies that the generated order code does not already exist in the system.
+     * Creates a new order with a description in the current store, generating an order code
+     * based on the current date and the counter of the store. If the date changes, the counter is reset.
+     * The counter is locked until the commit, so that concurrent creations get consecutive codes;
+     * codes already taken (e.g. by imported orders) are skipped.
      *
      * @param description The description of the order to create.
      * @return The DTO of the newly created order.
-     * @throws RuntimeException If the generated order code already exists (condition handled by do-while loop).
      */
     @Override
     @Transactional
     public OrderDTO createOrder(String description) {
+        String store = StoreContext.current();
+        LocalDate today = LocalDate.now();
 
-        // Get the current date in ddMMyyyy format
-        String currentDate = LocalDate.now().format(DateTimeFormatter.ofPattern("ddMMyyyy"));
-
-        // Get the last date and counter from the state variable, if available
-        String counter = "0001";  // Define a starting value for the counter
-        String lastDate = "";  // Variable to store the last date
+        OrderCodeSequence sequence = lockStore(store, today);  // Lock the counter of the store
 
         // If the current date is different from the last date, reset the counter
-        if (!currentDate.equals(lastDate)) {
-            counter = "0001";  // Reset the counter
-            lastDate = currentDate;  // Update the last date
+        if (!today.equals(sequence.getOrderDay())) {
+            sequence.setOrderDay(today);
+            sequence.setLastCounter(0);
         }
 
         String orderCode;
+        int counter = sequence.getLastCounter();
         do {
-            // Generate the order code using Utils
-            orderCode = Utils.generateOrderCode(lastDate, counter);
-
-            // Increment the counter
-            counter = Utils.increaseCounter(counter);
-
-        } while (orderRepository.existsByOrderCode(orderCode));  // Check if the code already exists
+            counter++;  // Increment the counter
+            orderCode = Utils.generateOrderCode(today, counter);  // Generate the order code using Utils
+        } while (orderRepository.existsByStoreAndOrderCode(store, orderCode));  // Check if the code already exists
+        sequence.setLastCounter(counter);  // Saved at the commit, with the order
 
-        // Verify if the order already exists
-        if (orderRepository.existsByOrderCode(orderCode)) {
-            throw new OrderAlreadyExistsException("Order with code " + orderCode + " already exists. Cannot create a duplicate order.");
-        }
         // Create and save the order
         Order order = new Order(description);
+        order.setStore(store);
         order.setOrderCode(orderCode);
         orderRepository.save(order);
+        eventPublisher.publishEvent(new OrderChangedEvent(store, order.getId(), orderCode, null, order.getStatus(), null));
 
         return orderMapper.toDTO(order);  // Return the DTO of the newly created order
     }
 
     /**
      * Takes charge of an order identified by its ID, updating its status to "IN_PREPARATION".
+     * The takes in charge of a store are serialized on the counter of the store, like the creations:
+     * otherwise concurrent takes in charge could all count the orders in preparation before any of them commits,
+     * and exceed the preparation limit, or check the status of an order another one is taking charge of.
      *
      * @param id The ID of the order to take charge of.
      * @return The DTO of the updated order.
@@ -89,8 +110,9 @@ public class OrderServiceImpl implements OrderService {
     @Override
     @Transactional
     public OrderDTO takeCharge(Long id) {
-        Order order = orderRepository.findById(id)
-                .orElseThrow(() -> new OrderNotFoundException("Order with ID " + id + " not found"));  // Find the order or throw an exception
+        // Lock the store first, so that the status and the count checked below stay true until the commit
+        lockStore(StoreContext.current(), LocalDate.now());
+        Order order = findInCurrentStore(id);  // Find the order or throw an exception
 
         // Verify that the order's status is "WAITING"
         if (order.getStatus() != OrderStatusEnum.WAITING) {
@@ -98,13 +120,17 @@ public class OrderServiceImpl implements OrderService {
             throw new OrderInvalidStateException("Order with ID " + id + " cannot be taken charge of. Current status: " + order.getStatus());
         }
 
-        // Count orders in preparation
-        if (orderRepository.countByStatus(OrderStatusEnum.PREPARATION) >= 1) {
-            throw new OrderAlreadyInPreparationException("There is already an order in preparation. Complete that one first.");
+        // Count orders in preparation in the store of the order
+        int preparationLimit = storeRegistry.getPreparationLimit(order.getStore());
+        if (orderRepository.countByStoreAndStatus(order.getStore(), OrderStatusEnum.PREPARATION) >= preparationLimit) {
+            throw preparationLimitReached(preparationLimit);
         }
 
         order.setStatus(OrderStatusEnum.PREPARATION);  // Set the status to "IN_PREPARATION"
+        order.setPreparationStartedAt(Instant.now());  // Start measuring the preparation time
         Order savedOrder = orderRepository.save(order);  // Save the updated order
+        eventPublisher.publishEvent(new OrderChangedEvent(savedOrder.getStore(), id, savedOrder.getOrderCode(),
+                OrderStatusEnum.WAITING, OrderStatusEnum.PREPARATION, null));
         return orderMapper.toDTO(savedOrder);  // Return the DTO of the updated order
     }
 
@@ -118,8 +144,7 @@ public class OrderServiceImpl implements OrderService {
     @Override
     @Transactional
     public OrderDTO completeOrder(Long id) {
-        Order order = orderRepository.findById(id)
-                .orElseThrow(() -> new OrderNotFoundException("Order with ID " + id + " not found"));  // Find the order or throw an exception
+        Order order = findInCurrentStore(id);  // Find the order or throw an exception
 
         // The order can only be completed if it is in the "IN_PREPARATION" state
         if (order.getStatus() != OrderStatusEnum.PREPARATION) {
@@ -128,6 +153,12 @@ public class OrderServiceImpl implements OrderService {
 
         order.setStatus(OrderStatusEnum.READY);  // Set the status to "READY"
         Order savedOrder = orderRepository.save(order);  // Save the updated order
+        // Orders taken in charge before the preparation time was recorded have no preparation time
+        Duration preparationTime = order.getPreparationStartedAt() == null
+                ? null
+                : Duration.between(order.getPreparationStartedAt(), Instant.now());
+        eventPublisher.publishEvent(new OrderChangedEvent(savedOrder.getStore(), id, savedOrder.getOrderCode(),
+                OrderStatusEnum.PREPARATION, OrderStatusEnum.READY, preparationTime));
         return orderMapper.toDTO(savedOrder);  // Return the DTO of the completed order
     }
 
@@ -137,8 +168,10 @@ public class OrderServiceImpl implements OrderService {
      * @return A list of DTOs of orders in the "WAITING" status.
      */
     @Override
+    @Transactional(readOnly = true)  // Read-only transactions are routed to the replica when one is configured
     public List<OrderDTO> getPendingOrders() {
-        List<Order> orders = orderRepository.findByStatus(OrderStatusEnum.WAITING);  // Find orders in the "WAITING" status
+        // Find the orders of the current store in the "WAITING" status
+        List<Order> orders = orderRepository.findByStoreAndStatus(StoreContext.current(), OrderStatusEnum.WAITING);
         return orders.stream()
                 .map(orderMapper::toDTO)  // Map each order to a DTO
                 .collect(Collectors.toList());  // Collect the DTOs in a list
@@ -152,9 +185,88 @@ public class OrderServiceImpl implements OrderService {
      * @throws RuntimeException If the order is not found.
      */
     @Override
+    @Transactional(readOnly = true)
     public OrderDTO getOrderByCode(String code) {
-        Order order = orderRepository.findByOrderCode(code)
+        Order order = orderRepository.findByStoreAndOrderCode(StoreContext.current(), code)
                 .orElseThrow(() -> new OrderNotFoundException("Order with code " + code + " not found"));  // Find the order or throw an exception
         return orderMapper.toDTO(order);  // Return the DTO of the found order
     }
+
+    /**
+     * Retrieves the version of an order by its unique order code.
+     * The order is looked up like in getOrderByCode, so that the version always matches the order
+     * returned by it, and is usually served by the second-level cache.
+     *
+     * @param code The unique order code.
+     * @return The version of the order, or an empty Optional if the order is not found.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Long> getOrderVersion(String code) {
+        return orderRepository.findByStoreAndOrderCode(StoreContext.current(), code).map(Order::getVersion);
+    }
+
+    /**
+     * Searches the orders by the content of their description.
+     * Only the MAX_SEARCH_CANDIDATES most recent matches are ranked and paged through; a too generic text
+     * should be refined rather than paged through. A search cancelled by its timeout is reported as an
+     * invalid request asking for a more precise text, not as an internal error.
+     *
+     * @param text The searched text.
+     * @param page The index of the page, starting from 0.
+     * @param size The number of orders per page, at most MAX_SEARCH_PAGE_SIZE.
+     * @return The page of the matching orders, ranked by relevance.
+     * @throws IllegalArgumentException If the text is blank or too long, the page is not valid, or the search timed out.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public OrderSearchResultDTO searchOrders(String text, int page, int size) {
+        if (text == null || text.isBlank() || text.length() > MAX_SEARCH_TEXT_LENGTH) {
+            throw new IllegalArgumentException("The searched text must be between 1 and " + MAX_SEARCH_TEXT_LENGTH + " characters");
+        }
+        if (page < 0 || size < 1 || size > MAX_SEARCH_PAGE_SIZE) {
+            throw new IllegalArgumentException("The page must be at least 0 and the size between 1 and " + MAX_SEARCH_PAGE_SIZE);
+        }
+
+        long offset = (long) page * size;
+        if (offset >= MAX_SEARCH_CANDIDATES) {
+            return new OrderSearchResultDTO(List.of(), page, size, false);  // Beyond the ranked matches
+        }
+        // One more order than the page size tells whether a next page exists, without counting the matches
+        List<Order> orders;
+        try {
+            orders = orderRepository.search(StoreContext.current(), text.strip(), MAX_SEARCH_CANDIDATES, size + 1, (int) offset);
+        } catch (QueryTimeoutException ex) {
+            throw new IllegalArgumentException("The search took too long, please refine the searched text");
+        }
+        boolean hasNext = orders.size() > size && offset + size < MAX_SEARCH_CANDIDATES;
+        List<OrderDTO> results = orders.stream()
+                .limit(size)
+                .map(orderMapper::toDTO)  // Map each order to a DTO
+                .collect(Collectors.toList());  // Collect the DTOs in a list
+        return new OrderSearchResultDTO(results, page, size, hasNext);
+    }
+
+    // Error of a take in charge beyond the preparation limit of the store, also used by EdgeOrderServiceImpl
+    static OrderAlreadyInPreparationException preparationLimitReached(int preparationLimit) {
+        return new OrderAlreadyInPreparationException(preparationLimit == 1
+                ? "There is already an order in preparation. Complete that one first."
+                : "There are already " + preparationLimit + " orders in preparation. Complete one of them first.");
+    }
+
+    // Locks the code counter of a store until the commit, creating it on the first order of the store
+    private OrderCodeSequence lockStore(String store, LocalDate today) {
+        return orderCodeSequenceRepository.findForUpdate(store).orElseGet(() -> {
+            orderCodeSequenceRepository.insertIfAbsent(store, today);
+            return orderCodeSequenceRepository.findForUpdate(store).orElseThrow();
+        });
+    }
+
+    // Finds an order of the current store by ID; the orders of the other stores of the shard are not visible
+    private Order findInCurrentStore(Long id) {
+        String store = StoreContext.current();
+        return orderRepository.findById(id)
+                .filter(order -> order.getStore().equals(store))
+                .orElseThrow(() -> new OrderNotFoundException("Order with ID " + id + " not found"));
+    }
 }
@@ -0,0 +1,35 @@
+package com.pizzaparty.service;
+
+import com.pizzaparty.dto.OrderDailyStatsDTO;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Interface that defines the methods for the daily statistics of the orders.
+ * The statistics are read from rollups maintained incrementally as orders change,
+ * never computed from the order table.
+ */
+public interface OrderStatsService {
+
+    /**
+     * Returns the statistics of a range of days.
+     *
+     * @param from The first day, included.
+     * @param to The last day, included.
+     * @return The statistics of the days that have orders, sorted by day.
+     * @throws IllegalArgumentException If the range is empty or longer than a year.
+     */
+    List<OrderDailyStatsDTO> getDailyStats(LocalDate from, LocalDate to);
+
+    /**
+     * Writes the order changes accumulated in memory to the rollups.
+     */
+    void flush();
+
+    /**
+     * Recomputes the order counts of the previous day from the orders, so that changes lost by a node
+     * (e.g. killed before writing them) do not make the rollups drift for good.
+     */
+    void repair();
+}
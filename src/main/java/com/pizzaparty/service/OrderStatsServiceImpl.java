@@ -0,0 +1,219 @@
+package com.pizzaparty.service;
+
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.StoreRegistry;
+import com.pizzaparty.config.Utils;
+import com.pizzaparty.dto.OrderDailyStatsDTO;
+import com.pizzaparty.entity.OrderDailyStats;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.event.OrderChangedEvent;
+import com.pizzaparty.repository.OrderDailyStatsRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Implementation of the service for the daily statistics of the orders.
+ * <p>
+ * Committed order changes are accumulated in memory by store and day and written to the "order_daily_stats" table
+ * of the shard of the store every second as increments, one UPDATE per store and day: the order transactions never touch the rollups,
+ * so they do not contend on the row of the current day, which every order of the day would otherwise lock.
+ * Each node writes its own increments, so the rollups add up the changes of all nodes.
+ * The changes of the last interval are lost if the node crashes before writing them: every night, the counts of
+ * the previous day are recomputed from the order table, outside peak hours. A lost preparation time is not recovered,
+ * but it is lost together with its count, so the average preparation time is not biased.
+ */
+@Service
+public class OrderStatsServiceImpl implements OrderStatsService {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderStatsServiceImpl.class);
+
+    // Longest range of days that can be requested
+    static final int MAX_DAYS = 366;
+
+    private final OrderDailyStatsRepository orderDailyStatsRepository;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final StoreRegistry storeRegistry;
+
+    // Changes committed and not yet written, by store and day; an entry is only changed inside compute() or removed
+    private final ConcurrentMap<StoreDay, DailyChanges> pendingChanges = new ConcurrentHashMap<>();
+
+    public OrderStatsServiceImpl(OrderDailyStatsRepository orderDailyStatsRepository, TransactionTemplate transactionTemplate,
+                                 StoreRegistry storeRegistry) {
+        this.orderDailyStatsRepository = orderDailyStatsRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.storeRegistry = storeRegistry;
+    }
+
+    /**
+     * Records a committed order change in the changes of the store and day of the order.
+     *
+     * @param event The committed change.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        StoreDay day = new StoreDay(event.getStore(), Utils.parseOrderDate(event.getOrderCode()));
+        pendingChanges.compute(day, (d, changes) -> {
+            DailyChanges updated = changes == null ? new DailyChanges() : changes;
+            updated.add(event);
+            return updated;
+        });
+    }
+
+    /**
+     * Writes the accumulated changes to the rollups, each store and day in its own transaction.
+     * The changes that cannot be written are kept for the next attempt.
+     */
+    @Override
+    @Scheduled(fixedDelayString = "${pizzaparty.stats.flush-interval:PT1S}")
+    public void flush() {
+        for (StoreDay day : pendingChanges.keySet()) {
+            DailyChanges changes = pendingChanges.remove(day);  // Later changes of the day start a new entry
+            if (changes == null) {
+                continue;
+            }
+            try {
+                // On the shard of the store
+                StoreContext.on(day.store(), () -> transactionTemplate.execute(status -> {
+                    if (addChanges(day, changes) == 0) {
+                        // First changes of the day: the rollup is created once, then only updated
+                        orderDailyStatsRepository.insertIfAbsent(day.store(), day.day());
+                        addChanges(day, changes);
+                    }
+                    return null;
+                }));
+            } catch (RuntimeException ex) {
+                logger.warn("Unable to write the order statistics of store {} on {}, will retry: {}", day.store(), day.day(), ex.getMessage());
+                pendingChanges.merge(day, changes, DailyChanges::merge);
+            }
+        }
+    }
+
+    /**
+     * Recomputes the order counts of the previous day of every store from the order table, store by store.
+     * The changes of this node are written first, so that they are not counted twice; a change of one of the orders
+     * of the day made by another node while the repair runs may still be, but the day is over by then.
+     */
+    @Override
+    @Scheduled(cron = "${pizzaparty.stats.repair-cron:0 30 4 * * *}")
+    public void repair() {
+        flush();
+        LocalDate day = LocalDate.now().minusDays(1);
+        String orderDay = day.format(DateTimeFormatter.BASIC_ISO_DATE); // yyyyMMdd
+        for (String store : storeRegistry.getStores()) {
+            try {
+                // Each store in its own transaction, on the shard of the store
+                StoreContext.on(store, () -> transactionTemplate.execute(status -> {
+                    orderDailyStatsRepository.recomputeCounts(store, day, orderDay);
+                    return null;
+                }));
+            } catch (RuntimeException ex) {
+                logger.warn("Unable to repair the order statistics of store {} on {}: {}", store, day, ex.getMessage());
+            }
+        }
+    }
+
+    private int addChanges(StoreDay day, DailyChanges changes) {
+        return orderDailyStatsRepository.addChanges(day.store(), day.day(), changes.created, changes.waiting,
+                changes.preparation, changes.ready, changes.preparationTimeTotalMs, changes.preparationTimeCount);
+    }
+
+    // Writes the last changes when the application stops
+    @PreDestroy
+    void flushOnShutdown() {
+        flush();
+    }
+
+    /**
+     * Returns the statistics of a range of days of the current store, read from the rollups only.
+     *
+     * @param from The first day, included.
+     * @param to The last day, included.
+     * @return The statistics of the days that have orders, sorted by day.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<OrderDailyStatsDTO> getDailyStats(LocalDate from, LocalDate to) {
+        if (to.isBefore(from) || ChronoUnit.DAYS.between(from, to) >= MAX_DAYS) {
+            throw new IllegalArgumentException("The range of days must contain between 1 and " + MAX_DAYS + " days");
+        }
+        return orderDailyStatsRepository.findByStoreAndOrderDayBetweenOrderByOrderDay(StoreContext.current(), from, to).stream()
+                .map(OrderStatsServiceImpl::toDTO)
+                .collect(Collectors.toList());
+    }
+
+    private static OrderDailyStatsDTO toDTO(OrderDailyStats stats) {
+        Double averagePreparationSeconds = stats.getPreparationTimeCount() == 0
+                ? null
+                : stats.getPreparationTimeTotalMs() / 1000.0 / stats.getPreparationTimeCount();
+        return new OrderDailyStatsDTO(Utils.formatOrderDate(stats.getOrderDay()), stats.getCreatedCount(),
+                stats.getWaitingCount(), stats.getPreparationCount(), stats.getReadyCount(), averagePreparationSeconds);
+    }
+
+    // Key of the rollup of a store for a day
+    private record StoreDay(String store, LocalDate day) {
+    }
+
+    // Changes of the rollup of one day
+    private static class DailyChanges {
+
+        private long created;
+
+        private long waiting;
+
+        private long preparation;
+
+        private long ready;
+
+        private long preparationTimeTotalMs;
+
+        private long preparationTimeCount;
+
+        private void add(OrderChangedEvent event) {
+            if (event.getPreviousStatus() == null) {
+                created++;
+            } else {
+                count(event.getPreviousStatus(), -1);  // The order leaves its previous status
+            }
+            count(event.getStatus(), 1);
+            if (event.getPreparationTime() != null) {
+                preparationTimeTotalMs += event.getPreparationTime().toMillis();
+                preparationTimeCount++;
+            }
+        }
+
+        private void count(OrderStatusEnum status, long delta) {
+            switch (status) {
+                case WAITING -> waiting += delta;
+                case PREPARATION -> preparation += delta;
+                case READY -> ready += delta;
+            }
+        }
+
+        private static DailyChanges merge(DailyChanges first, DailyChanges second) {
+            first.created += second.created;
+            first.waiting += second.waiting;
+            first.preparation += second.preparation;
+            first.ready += second.ready;
+            first.preparationTimeTotalMs += second.preparationTimeTotalMs;
+            first.preparationTimeCount += second.preparationTimeCount;
+            return first;
+        }
+    }
+}
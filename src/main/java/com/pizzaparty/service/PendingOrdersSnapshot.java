@@ -0,0 +1,170 @@
+package com.pizzaparty.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.WireFormat;
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.event.OrderChangedEvent;
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized pending orders list (JSON and CBOR), shared by all the pollers of GET /orders/waiting.
+ * The list is queried, mapped and serialized only when an order change has been committed since the
+ * last build (or when the snapshot is older than the configured max age, to pick up changes committed
+ * by other nodes); every other poll is answered with the same bytes.
+ * Each store has its own snapshot, rebuilt only after a change of an order of that store.
+ */
+@Component
+public class PendingOrdersSnapshot {
+
+    private final OrderService orderService;
+
+    private final ObjectMapper objectMapper;
+
+    private final ObjectMapper cborMapper;
+
+    private final long maxAgeNanos;
+
+    // Distinguishes the versions of this process from the ones of a previous run or of another node
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    // Snapshot of each store; the configured stores are few, so the map is not bounded
+    private final ConcurrentMap<String, StoreSnapshot> stores = new ConcurrentHashMap<>();
+
+    public PendingOrdersSnapshot(OrderService orderService,
+                                 ObjectMapper objectMapper,
+                                 MappingJackson2CborHttpMessageConverter cborHttpMessageConverter,
+                                 @Value("${pizzaparty.pending-snapshot.max-age:2s}") Duration maxAge) {
+        this.orderService = orderService;
+        this.objectMapper = objectMapper;
+        this.cborMapper = cborHttpMessageConverter.getObjectMapper();
+        this.maxAgeNanos = maxAge.toNanos();
+    }
+
+    /**
+     * Returns the current snapshot of the pending orders of the current store, rebuilding it first if it is stale.
+     * Concurrent pollers of a stale snapshot wait for a single rebuild.
+     *
+     * @return The current snapshot.
+     */
+    public Snapshot current() {
+        StoreSnapshot store = storeSnapshot(StoreContext.current());
+        Snapshot current = store.snapshot;
+        if (isFresh(current, store.committedChanges.get())) {
+            return current;
+        }
+        synchronized (store) {
+            current = store.snapshot;
+            // Read the counter before the query, so that a change committed meanwhile triggers another rebuild
+            long changes = store.committedChanges.get();
+            if (isFresh(current, changes)) {
+                return current;
+            }
+            store.snapshot = build(current, changes);
+            return store.snapshot;
+        }
+    }
+
+    /**
+     * Marks the snapshot as stale once an order creation or transition has been committed.
+     *
+     * @param event The committed change.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        storeSnapshot(event.getStore()).committedChanges.incrementAndGet();
+    }
+
+    private StoreSnapshot storeSnapshot(String store) {
+        return stores.computeIfAbsent(store, s -> new StoreSnapshot());
+    }
+
+    private boolean isFresh(Snapshot current, long changes) {
+        return current != null
+                && current.changes == changes
+                && System.nanoTime() - current.builtAt < maxAgeNanos;
+    }
+
+    private Snapshot build(Snapshot previous, long changes) {
+        byte[] json;
+        byte[] cbor;
+        try {
+            List<OrderDTO> orders = orderService.getPendingOrders();
+            json = objectMapper.writeValueAsBytes(orders);
+            cbor = cborMapper.writeValueAsBytes(orders);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException("Unable to serialize the pending orders", ex);
+        }
+
+        // Keep the version when the content did not change, so that clients keep a valid ETag
+        long version = previous == null ? 1 : previous.version;
+        if (previous != null && !Arrays.equals(previous.json, json)) {
+            version++;
+        }
+        return new Snapshot(version, epoch + "-" + version, json, cbor, changes, System.nanoTime());
+    }
+
+    // Snapshot of a store and the number of changes of its orders committed on this node
+    private static class StoreSnapshot {
+
+        private final AtomicLong committedChanges = new AtomicLong();
+
+        private volatile Snapshot snapshot;
+    }
+
+    /**
+     * Immutable serialized pending orders list with its version.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Snapshot {
+
+        private final long version; // Incremented each time the content changes
+
+        @Getter(AccessLevel.NONE)
+        private final String tag; // Identifies the version of the content, ETags are derived from it
+
+        @Getter(AccessLevel.NONE)
+        private final byte[] json; // Serialized list in JSON; shared by all responses, so it must never be modified
+
+        @Getter(AccessLevel.NONE)
+        private final byte[] cbor; // Serialized list in CBOR; shared by all responses, so it must never be modified
+
+        @Getter(AccessLevel.NONE)
+        private final long changes; // Committed changes included in this snapshot
+
+        @Getter(AccessLevel.NONE)
+        private final long builtAt; // System.nanoTime() of the build
+
+        /**
+         * @param format The wire format of the response.
+         * @return The serialized list in the given format; it must never be modified.
+         */
+        public byte[] getBody(WireFormat format) {
+            return format == WireFormat.CBOR ? cbor : json;
+        }
+
+        /**
+         * @param format The wire format of the response.
+         * @return The strong ETag of the list in the given format, different for each format.
+         */
+        public String getEtag(WireFormat format) {
+            return format.toEtag(tag);
+        }
+    }
+}
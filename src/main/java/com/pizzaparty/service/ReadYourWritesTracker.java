@@ -0,0 +1,68 @@
+package com.pizzaparty.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.pizzaparty.event.OrderChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Remembers the orders changed on this node during the last few seconds, so that reads that could
+ * observe them are sent to the primary instead of a replica that may not have replayed them yet.
+ * The window is the staleness accepted from the replica and must exceed its usual replication lag.
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    private final long windowNanos;
+
+    // Stores and codes ("store/code") of the orders changed within the window
+    private final Cache<String, Boolean> recentlyChangedCodes;
+
+    // System.nanoTime() of the last committed change of any order
+    private final AtomicLong lastChange = new AtomicLong(System.nanoTime() - Long.MAX_VALUE / 2);
+
+    public ReadYourWritesTracker(@Value("${pizzaparty.datasource.read-your-writes-window:5s}") Duration window) {
+        this.windowNanos = window.toNanos();
+        this.recentlyChangedCodes = Caffeine.newBuilder()
+                .maximumSize(100_000) // Bound the memory at peak; an evicted code can only cause a stale read
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    /**
+     * Records a committed order change.
+     *
+     * @param event The committed change.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        recentlyChangedCodes.put(event.getStore() + "/" + event.getOrderCode(), Boolean.TRUE);
+        lastChange.set(System.nanoTime());
+    }
+
+    /**
+     * Tells whether reading the given order from the replica could miss a change made on this node.
+     *
+     * @param store The store of the order to read.
+     * @param orderCode The code of the order to read.
+     * @return true if the order must be read from the primary.
+     */
+    public boolean mustReadFromPrimary(String store, String orderCode) {
+        return recentlyChangedCodes.getIfPresent(store + "/" + orderCode) != null;
+    }
+
+    /**
+     * Tells whether reading lists of orders from the replica could miss a change made on this node.
+     *
+     * @return true if any order changed within the window.
+     */
+    public boolean mustReadListsFromPrimary() {
+        return System.nanoTime() - lastChange.get() < windowNanos;
+    }
+}
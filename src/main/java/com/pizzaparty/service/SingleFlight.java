@@ -0,0 +1,93 @@
+package com.pizzaparty.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent identical calls into a single execution.
+ * While a call for a key is in flight, every other caller asking for the same key waits for it
+ * and receives the same result (or the same exception) instead of running its own call.
+ * Nothing is cached: once the call completes, the next caller starts a new one.
+ *
+ * @param <K> Type of the key identifying identical calls.
+ * @param <V> Type of the result shared by the callers.
+ */
+public class SingleFlight<K, V> {
+
+    // Calls currently in flight, by key
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    // Number of calls actually executed
+    private final LongAdder executed = new LongAdder();
+
+    // Number of calls that joined a call already in flight
+    private final LongAdder collapsed = new LongAdder();
+
+    /**
+     * Returns the result of the call in flight for the key, or executes the loader if there is none.
+     *
+     * @param key The key identifying the call.
+     * @param loader The call to execute when no identical call is in flight.
+     * @return The result of the call.
+     */
+    public V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> call = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, call);
+        if (existing != null) {
+            collapsed.increment();
+            return join(existing);
+        }
+
+        executed.increment();
+        try {
+            V result = loader.get();
+            call.complete(result);
+            return result;
+        } catch (Throwable ex) {
+            // Errors too (e.g. OutOfMemoryError): the callers that joined the call must never wait forever
+            call.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            // Remove the call before the next request, so that it sees data committed after this call started
+            inFlight.remove(key, call);
+        }
+    }
+
+    /**
+     * @return The number of calls actually executed.
+     */
+    public long getExecutedCount() {
+        return executed.sum();
+    }
+
+    /**
+     * @return The number of calls that were served by a call already in flight.
+     */
+    public long getCollapsedCount() {
+        return collapsed.sum();
+    }
+
+    /**
+     * Waits for a call started by another thread, rethrowing its original exception if it failed.
+     *
+     * @param call The call to wait for.
+     * @param <V> Type of the result.
+     * @return The result of the call.
+     */
+    public static <V> V join(CompletableFuture<V> call) {
+        try {
+            return call.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException cause) {
+                throw cause; // Rethrow the original exception so that it is handled as for the first caller
+            }
+            if (ex.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw ex;
+        }
+    }
+}
@@ -23,3 +23,98 @@ ELSE
         RAISE NOTICE 'The table "order" already exists in the "public" schema.';
 END IF;
 END $$;
+
+-- Version of the order, used for optimistic locking and as ETag
+ALTER TABLE public.order ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Outcome of the order creation requests sent with an Idempotency-Key header
+CREATE TABLE IF NOT EXISTS public.idempotency_record (
+    idempotency_key VARCHAR(255) PRIMARY KEY,
+    order_id BIGINT NOT NULL REFERENCES public.order (id),
+    order_code VARCHAR(50) NOT NULL,
+    description VARCHAR(255) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+-- Supports the periodic purge of expired keys
+CREATE INDEX IF NOT EXISTS idx_idempotency_record_created_at ON public.idempotency_record (created_at);
+
+-- Full-text and fuzzy search over the descriptions (GET /orders/search).
+-- The 'simple' configuration keeps every word: stop words such as "senza" matter in an order.
+-- CONCURRENTLY does not block the writes while the indexes are built, but cannot run inside a transaction block.
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_description_fts ON public.order USING gin (to_tsvector('simple', description));
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_description_trgm ON public.order USING gin (description gin_trgm_ops);
+
+-- Instant at which the order was taken in charge, used to measure the preparation time
+ALTER TABLE public.order ADD COLUMN IF NOT EXISTS preparation_started_at TIMESTAMP WITH TIME ZONE;
+
+-- Daily rollups of the orders (GET /orders/stats), maintained incrementally by OrderStatsServiceImpl.
+-- The day is the one contained in the order code; the status counts are the current statuses of the orders of the day.
+CREATE TABLE IF NOT EXISTS public.order_daily_stats (
+    order_day DATE PRIMARY KEY,
+    created_count BIGINT NOT NULL DEFAULT 0,
+    waiting_count BIGINT NOT NULL DEFAULT 0,
+    preparation_count BIGINT NOT NULL DEFAULT 0,
+    ready_count BIGINT NOT NULL DEFAULT 0,
+    preparation_time_total_ms BIGINT NOT NULL DEFAULT 0,
+    preparation_time_count BIGINT NOT NULL DEFAULT 0
+);
+
+-- Day of the order code as yyyyMMdd, used by the range filter of the bulk export (GET /orders/export)
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_code_day ON public.order ((substring(order_code, 9, 4) || substring(order_code, 7, 2) || substring(order_code, 5, 2)));
+
+-- Stores (pizzerias): every order belongs to a store, and order codes are unique within their store.
+-- The orders created before stores existed belong to the main store. Run this script on every shard.
+ALTER TABLE public.order ADD COLUMN IF NOT EXISTS store VARCHAR(50) NOT NULL DEFAULT 'main';
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS uk_order_store_code ON public.order (store, order_code);
+ALTER TABLE public.order DROP CONSTRAINT IF EXISTS order_order_code_key;
+-- Orders in preparation of a store (per-store preparation limit) and pending orders of a store
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_order_store_status ON public.order (store, status);
+
+ALTER TABLE public.idempotency_record ADD COLUMN IF NOT EXISTS store VARCHAR(50) NOT NULL DEFAULT 'main';
+
+-- The rollups are kept per store and day
+ALTER TABLE public.order_daily_stats ADD COLUMN IF NOT EXISTS store VARCHAR(50) NOT NULL DEFAULT 'main';
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.key_column_usage
+        WHERE table_schema = 'public'
+        AND table_name = 'order_daily_stats'
+        AND constraint_name = 'order_daily_stats_pkey'
+        AND column_name = 'store'
+    ) THEN
+        ALTER TABLE public.order_daily_stats DROP CONSTRAINT order_daily_stats_pkey,
+            ADD CONSTRAINT order_daily_stats_pkey PRIMARY KEY (store, order_day);
+    END IF;
+END $$;
+
+-- Order code counter of each store, locked by the order creations of the store
+CREATE TABLE IF NOT EXISTS public.order_code_sequence (
+    store VARCHAR(50) PRIMARY KEY,
+    order_day DATE NOT NULL,
+    last_counter INTEGER NOT NULL
+);
+
+-- User who sent the original request of an idempotency key: a key is only replayed to that user.
+-- The keys recorded before this column existed are never replayed again; they expire with the retention.
+ALTER TABLE public.idempotency_record ADD COLUMN IF NOT EXISTS principal VARCHAR(255) NOT NULL DEFAULT '';
+
+-- Idempotency keys are scoped by store: the stores sharing a shard can use the same key
+DO $$
+BEGIN
+    IF NOT EXISTS (
+        SELECT 1
+        FROM information_schema.key_column_usage
+        WHERE table_schema = 'public'
+        AND table_name = 'idempotency_record'
+        AND constraint_name = 'idempotency_record_pkey'
+        AND column_name = 'store'
+    ) THEN
+        ALTER TABLE public.idempotency_record DROP CONSTRAINT idempotency_record_pkey,
+            ADD CONSTRAINT idempotency_record_pkey PRIMARY KEY (store, idempotency_key);
+    END IF;
+END $$;
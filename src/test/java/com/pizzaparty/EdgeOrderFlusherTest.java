@@ -0,0 +1,155 @@
+package com.pizzaparty;
+
+import com.pizzaparty.config.ShardingProperties;
+import com.pizzaparty.config.SqlInspection;
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.StoreRegistry;
+import com.pizzaparty.config.Utils;
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.repository.EdgeOrderJournal;
+import com.pizzaparty.service.EdgeOrderFlusher;
+import com.pizzaparty.service.EdgeOrderServiceImpl;
+import com.pizzaparty.service.OrderServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Runs the SQL of the edge flusher against H2 in PostgreSQL mode, on the columns and keys of create_schema.sql.
+ */
+class EdgeOrderFlusherTest {
+
+    private static final String CREATE_ORDER_TABLE = "CREATE TABLE \"order\" ("
+            + "id BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY, store VARCHAR(50) NOT NULL,"
+            + " order_code VARCHAR(50) NOT NULL, description VARCHAR(255) NOT NULL, status VARCHAR(20) NOT NULL,"
+            + " version BIGINT NOT NULL, preparation_started_at TIMESTAMP WITH TIME ZONE, UNIQUE (store, order_code))";
+
+    private static final String CREATE_IDEMPOTENCY_RECORD_TABLE = "CREATE TABLE idempotency_record ("
+            + "idempotency_key VARCHAR(255) NOT NULL, store VARCHAR(50) NOT NULL, principal VARCHAR(255) NOT NULL,"
+            + " order_id BIGINT NOT NULL REFERENCES \"order\" (id), order_code VARCHAR(50) NOT NULL,"
+            + " description VARCHAR(255) NOT NULL, status VARCHAR(20) NOT NULL, created_at TIMESTAMP WITH TIME ZONE NOT NULL,"
+            + " PRIMARY KEY (store, idempotency_key))";
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private OrderServiceImpl database;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate transactionTemplate;
+
+    private EdgeOrderServiceImpl edgeOrderService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this); // Initialize mocks
+
+        // A new database for each test, kept until the end of the JVM
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID()
+                + ";MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1");
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute(CREATE_ORDER_TABLE);
+        jdbcTemplate.execute(CREATE_IDEMPOTENCY_RECORD_TABLE);
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+        StoreRegistry storeRegistry = new StoreRegistry(new ShardingProperties(), mock(DataSource.class), mock(SqlInspection.class));
+        edgeOrderService = new EdgeOrderServiceImpl(database, new EdgeOrderJournal(directory.resolve("edge-journal.jsonl")),
+                storeRegistry, eventPublisher);
+        ReflectionTestUtils.invokeMethod(edgeOrderService, "load");
+    }
+
+    @Test
+    void testStatusUpdateIsWritten() {
+        OrderDTO margherita = edgeOrderService.createOrder("Pizza Margherita");
+        EdgeOrderFlusher flusher = flusher(transactionTemplate);
+        flusher.flush();
+
+        edgeOrderService.takeCharge(margherita.getId());
+        flusher.flush();
+
+        assertEquals(List.of(Map.of("order_code", margherita.getOrderCode(), "status", "PREPARATION", "version", 1L)),
+                jdbcTemplate.queryForList("SELECT order_code, status, version FROM \"order\""));
+        assertNotNull(jdbcTemplate.queryForObject("SELECT preparation_started_at FROM \"order\"", Object.class));
+        assertEquals(List.of("edge/kiosk-1/1"), jdbcTemplate.queryForList("SELECT idempotency_key FROM idempotency_record", String.class));
+    }
+
+    @Test
+    void testTakenCodeIsRenamedToTheNextFreeCodeOfItsDay() {
+        // Codes 1 and 2 of the day were taken by another node of the store; the codes of another store do not count
+        LocalDate today = LocalDate.now();
+        insertOrder(StoreContext.DEFAULT_STORE, Utils.generateOrderCode(today, 1));
+        insertOrder(StoreContext.DEFAULT_STORE, Utils.generateOrderCode(today, 2));
+        insertOrder("napoli", Utils.generateOrderCode(today, 5));
+        OrderDTO margherita = edgeOrderService.createOrder("Pizza Margherita");
+        assertEquals(Utils.generateOrderCode(today, 1), margherita.getOrderCode());
+
+        flusher(transactionTemplate).flush();
+
+        String renamedCode = Utils.generateOrderCode(today, 3);
+        assertEquals("Pizza Margherita", jdbcTemplate.queryForObject("SELECT description FROM \"order\" WHERE store = ? AND order_code = ?",
+                String.class, StoreContext.DEFAULT_STORE, renamedCode));
+        assertEquals(renamedCode, jdbcTemplate.queryForObject("SELECT order_code FROM idempotency_record WHERE idempotency_key = ?",
+                String.class, "edge/kiosk-1/1"));
+        assertEquals(renamedCode, edgeOrderService.getOrderByCode(margherita.getOrderCode()).getOrderCode());
+        assertTrue(edgeOrderService.getPendingOrders().stream().allMatch(order -> order.getOrderCode().equals(renamedCode)));
+    }
+
+    @Test
+    void testInsertWhoseAcknowledgmentWasLostBecomesAnUpdate() {
+        OrderDTO margherita = edgeOrderService.createOrder("Pizza Margherita");
+        // The transaction commits, but the kiosk never learns it
+        TransactionTemplate lostAcknowledgment = new TransactionTemplate(transactionTemplate.getTransactionManager()) {
+            @Override
+            public <T> T execute(TransactionCallback<T> action) throws TransactionException {
+                super.execute(action);
+                throw new DataAccessResourceFailureException("Connection reset");
+            }
+        };
+        flusher(lostAcknowledgment).flush();
+        assertEquals(1, edgeOrderService.getPendingOrders().size());
+
+        // Written again after a change: the order is found by its key instead of being taken for a code collision
+        edgeOrderService.takeCharge(margherita.getId());
+        flusher(transactionTemplate).flush();
+
+        assertEquals(List.of(Map.of("order_code", margherita.getOrderCode(), "status", "PREPARATION")),
+                jdbcTemplate.queryForList("SELECT order_code, status FROM \"order\""));
+        assertEquals(1, jdbcTemplate.queryForObject("SELECT count(*) FROM idempotency_record", Integer.class));
+        assertEquals(margherita.getOrderCode(), edgeOrderService.getOrderByCode(margherita.getOrderCode()).getOrderCode());
+    }
+
+    private EdgeOrderFlusher flusher(TransactionTemplate transactionTemplate) {
+        return new EdgeOrderFlusher(edgeOrderService, jdbcTemplate, transactionTemplate, "kiosk-1", 100);
+    }
+
+    private void insertOrder(String store, String orderCode) {
+        jdbcTemplate.update("INSERT INTO \"order\" (store, order_code, description, status, version) VALUES (?, ?, 'Pizza Diavola', 'WAITING', 0)",
+                store, orderCode);
+    }
+}
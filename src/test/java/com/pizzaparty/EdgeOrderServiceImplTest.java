@@ -0,0 +1,178 @@
+package com.pizzaparty;
+
+import com.pizzaparty.config.ShardingProperties;
+import com.pizzaparty.config.SqlInspection;
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.StoreRegistry;
+import com.pizzaparty.config.Utils;
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.exceptions.OrderAlreadyInPreparationException;
+import com.pizzaparty.exceptions.OrderNotFoundException;
+import com.pizzaparty.repository.EdgeOrderJournal;
+import com.pizzaparty.service.EdgeOrderFlusher;
+import com.pizzaparty.service.EdgeOrderServiceImpl;
+import com.pizzaparty.service.OrderServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class EdgeOrderServiceImplTest {
+
+    @TempDir
+    Path directory;
+
+    @Mock
+    private OrderServiceImpl database;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private StoreRegistry storeRegistry;
+
+    private Path journalPath;
+
+    private EdgeOrderServiceImpl edgeOrderService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this); // Initialize mocks
+        ShardingProperties properties = new ShardingProperties();
+        properties.getStores().put("napoli", new ShardingProperties.Store());
+        storeRegistry = new StoreRegistry(properties, mock(DataSource.class), mock(SqlInspection.class));
+        journalPath = directory.resolve("edge-journal.jsonl");
+        edgeOrderService = start();
+    }
+
+    @Test
+    void testOrdersAreServedLocally() {
+        OrderDTO margherita = edgeOrderService.createOrder("Pizza Margherita");
+        OrderDTO diavola = edgeOrderService.createOrder("Pizza Diavola");
+
+        // Local IDs are negative, codes follow the counter of the store
+        assertEquals(-1L, margherita.getId());
+        assertEquals(-2L, diavola.getId());
+        assertTrue(margherita.getOrderCode().endsWith("-0001"));
+        assertTrue(diavola.getOrderCode().endsWith("-0002"));
+        assertEquals(List.of(margherita, diavola), edgeOrderService.getPendingOrders());
+
+        edgeOrderService.takeCharge(margherita.getId());
+        // The main store allows a single order in preparation
+        assertThrows(OrderAlreadyInPreparationException.class, () -> edgeOrderService.takeCharge(diavola.getId()));
+        assertEquals(OrderStatusEnum.READY, edgeOrderService.completeOrder(margherita.getId()).getStatus());
+        assertEquals(OrderStatusEnum.PREPARATION, edgeOrderService.takeCharge(diavola.getId()).getStatus());
+
+        assertEquals(Long.valueOf(2), edgeOrderService.getOrderVersion(margherita.getOrderCode()).orElseThrow());
+        verify(eventPublisher, times(5)).publishEvent(any(Object.class)); // Rollups and snapshots stay up to date
+        verifyNoInteractions(database); // The database is never needed
+    }
+
+    @Test
+    void testOrdersSurviveARestart() throws Exception {
+        OrderDTO margherita = edgeOrderService.createOrder("Pizza Margherita");
+        edgeOrderService.takeCharge(margherita.getId());
+        // A crash in the middle of the write of a change leaves an incomplete last line
+        Files.writeString(journalPath, "{\"type\":\"order\",\"id\":-2,", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        EdgeOrderServiceImpl restarted = start();
+
+        assertEquals(OrderStatusEnum.PREPARATION, restarted.getOrderByCode(margherita.getOrderCode()).getStatus());
+        OrderDTO diavola = restarted.createOrder("Pizza Diavola");
+        assertEquals(-2L, diavola.getId()); // IDs and codes are not reused
+        assertTrue(diavola.getOrderCode().endsWith("-0002"));
+    }
+
+    @Test
+    void testWrittenOrdersAreAcknowledged() {
+        OrderDTO margherita = edgeOrderService.createOrder("Pizza Margherita");
+        OrderDTO diavola = edgeOrderService.createOrder("Pizza Diavola");
+        edgeOrderService.takeCharge(margherita.getId());
+        edgeOrderService.completeOrder(margherita.getId());
+        String renamedCode = Utils.generateOrderCode(LocalDate.now(), 42);
+
+        // The code of the second order was already taken in the database
+        EdgeOrderFlusher flusher = flusher(Map.of(diavola.getId(), renamedCode));
+        flusher.flush();
+
+        // The completed order is now read from the database, the other one by both of its codes
+        when(database.getOrderByCode(margherita.getOrderCode())).thenReturn(margherita);
+        assertSame(margherita, edgeOrderService.getOrderByCode(margherita.getOrderCode()));
+        assertEquals(renamedCode, edgeOrderService.getOrderByCode(diavola.getOrderCode()).getOrderCode());
+        assertEquals(renamedCode, edgeOrderService.getOrderByCode(renamedCode).getOrderCode());
+        // The counter continues after the code assigned by the database
+        assertTrue(edgeOrderService.createOrder("Pizza Marinara").getOrderCode().endsWith("-0043"));
+
+        // Nothing left to write but the new order, and the state is kept across a restart
+        EdgeOrderServiceImpl restarted = start();
+        assertEquals(renamedCode, restarted.getOrderByCode(renamedCode).getOrderCode());
+        assertThrows(OrderNotFoundException.class, () -> restarted.takeCharge(margherita.getId()));
+    }
+
+    @Test
+    void testChangesAreKeptWhileTheDatabaseIsUnreachable() {
+        OrderDTO margherita = edgeOrderService.createOrder("Pizza Margherita");
+        when(transactionTemplate.execute(any())).thenThrow(new DataAccessResourceFailureException("Connection refused"));
+        EdgeOrderFlusher flusher = new EdgeOrderFlusher(edgeOrderService, mock(JdbcTemplate.class), transactionTemplate, "kiosk-1", 100);
+
+        flusher.flush();
+
+        assertEquals(List.of(margherita), edgeOrderService.getPendingOrders());
+        assertEquals(margherita.getId(), start().getPendingOrders().get(0).getId()); // Still in the journal
+    }
+
+    @Test
+    void testOrdersOfOtherStoresAreNotVisible() {
+        OrderDTO margherita = edgeOrderService.createOrder("Pizza Margherita");
+
+        StoreContext.on("napoli", () -> {
+            assertTrue(edgeOrderService.getPendingOrders().isEmpty());
+            assertThrows(OrderNotFoundException.class, () -> edgeOrderService.takeCharge(margherita.getId()));
+            // Each store has its own code counter
+            assertTrue(edgeOrderService.createOrder("Pizza Diavola").getOrderCode().endsWith("-0001"));
+            return null;
+        });
+    }
+
+    @Test
+    void testInvalidDescriptionIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> edgeOrderService.createOrder(""));
+        assertThrows(IllegalArgumentException.class, () -> edgeOrderService.createOrder("a".repeat(256)));
+    }
+
+    // Starts the service on the journal, like at the start of the application
+    private EdgeOrderServiceImpl start() {
+        EdgeOrderServiceImpl service = new EdgeOrderServiceImpl(database, new EdgeOrderJournal(journalPath), storeRegistry, eventPublisher);
+        ReflectionTestUtils.invokeMethod(service, "load");
+        return service;
+    }
+
+    // Flusher whose transaction writes every order, assigning the given codes
+    private EdgeOrderFlusher flusher(Map<Long, String> renamedCodes) {
+        TransactionTemplate writes = mock(TransactionTemplate.class);
+        when(writes.execute(any())).thenReturn(renamedCodes);
+        return new EdgeOrderFlusher(edgeOrderService, mock(JdbcTemplate.class), writes, "kiosk-1", 100);
+    }
+}
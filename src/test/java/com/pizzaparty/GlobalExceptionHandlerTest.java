@@ -0,0 +1,86 @@
+package com.pizzaparty;
+
+import com.pizzaparty.dto.ErrorResponseDTO;
+import com.pizzaparty.enumeration.ErrorCodeEnum;
+import com.pizzaparty.exceptions.GlobalExceptionHandler;
+import com.pizzaparty.exceptions.LogRateLimiter;
+import com.pizzaparty.exceptions.OrderAlreadyInPreparationException;
+import com.pizzaparty.exceptions.OrderNotFoundException;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.slf4j.Logger;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class GlobalExceptionHandlerTest {
+
+    private final GlobalExceptionHandler handler = new GlobalExceptionHandler(10, Duration.ofSeconds(1));
+
+    @Test
+    void testDomainExceptionsHaveNoStackTrace() {
+        OrderNotFoundException ex = new OrderNotFoundException("Order with ID 1 not found");
+
+        assertEquals(0, ex.getStackTrace().length);
+        assertEquals(ErrorCodeEnum.ORDER_NOT_FOUND, ex.getErrorCode());
+    }
+
+    @Test
+    void testDomainExceptionResponseCarriesItsErrorCode() {
+        ResponseEntity<ErrorResponseDTO> response = handler.handleOrderDomainException(
+                new OrderAlreadyInPreparationException("There is already an order in preparation. Complete that one first."));
+
+        assertEquals(HttpStatus.BAD_REQUEST, response.getStatusCode());
+        assertEquals(ErrorCodeEnum.ORDER_ALREADY_IN_PREPARATION, response.getBody().getCode());
+        assertEquals("There is already an order in preparation. Complete that one first.", response.getBody().getMessage());
+    }
+
+    @Test
+    void testConcurrentModificationIsAConflict() {
+        ResponseEntity<ErrorResponseDTO> response = handler.handleOptimisticLockingFailureException(
+                new OptimisticLockingFailureException("Row was updated or deleted by another transaction"));
+
+        assertEquals(HttpStatus.CONFLICT, response.getStatusCode());
+        assertEquals(ErrorCodeEnum.ORDER_CONCURRENT_MODIFICATION, response.getBody().getCode());
+    }
+
+    @Test
+    void testRateLimiterLogsAtMostTheLimitPerInterval() {
+        Logger logger = Mockito.mock(Logger.class);
+        LogRateLimiter limiter = new LogRateLimiter(3, Duration.ofHours(1));
+
+        int logged = 0;
+        for (int i = 0; i < 100; i++) {
+            if (limiter.warn(logger, ErrorCodeEnum.ORDER_INVALID_STATE, "Order with ID 1 cannot be completed")) {
+                logged++;
+            }
+        }
+
+        assertEquals(3, logged);
+        verify(logger, times(3)).warn(anyString(), eq(ErrorCodeEnum.ORDER_INVALID_STATE), any(Object.class));
+        // The limit applies per code
+        assertTrue(limiter.warn(logger, ErrorCodeEnum.ORDER_NOT_FOUND, "Order with ID 2 not found"));
+    }
+
+    @Test
+    void testRateLimiterReportsSuppressedErrorsAtTheNextInterval() throws InterruptedException {
+        Logger logger = Mockito.mock(Logger.class);
+        LogRateLimiter limiter = new LogRateLimiter(1, Duration.ofMillis(50));
+
+        assertTrue(limiter.warn(logger, ErrorCodeEnum.ORDER_INVALID_STATE, "first"));
+        assertFalse(limiter.warn(logger, ErrorCodeEnum.ORDER_INVALID_STATE, "second"));
+        assertFalse(limiter.warn(logger, ErrorCodeEnum.ORDER_INVALID_STATE, "third"));
+        Thread.sleep(60);
+
+        assertTrue(limiter.warn(logger, ErrorCodeEnum.ORDER_INVALID_STATE, "fourth"));
+        verify(logger).warn(contains("more errors"), eq(ErrorCodeEnum.ORDER_INVALID_STATE), eq(2));
+    }
+}
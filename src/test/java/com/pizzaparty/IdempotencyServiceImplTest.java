@@ -0,0 +1,191 @@
+package com.pizzaparty;
+
+import com.pizzaparty.config.ShardingProperties;
+import com.pizzaparty.config.SqlInspection;
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.StoreRegistry;
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.entity.IdempotencyRecord;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.repository.IdempotencyRecordRepository;
+import com.pizzaparty.service.IdempotencyServiceImpl;
+import com.pizzaparty.service.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class IdempotencyServiceImplTest {
+
+    // Key "key-1" of the main store
+    private static final IdempotencyRecord.Key MAIN_KEY_1 = new IdempotencyRecord.Key(StoreContext.DEFAULT_STORE, "key-1");
+
+    @Mock
+    private OrderService orderService;
+
+    @Mock
+    private IdempotencyRecordRepository idempotencyRecordRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private IdempotencyServiceImpl idempotencyService;
+
+    private OrderDTO orderDTO;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this); // Initialize mocks
+
+        // Run the transaction callbacks directly in the calling thread
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(idempotencyRecordRepository.findById(any(IdempotencyRecord.Key.class))).thenReturn(Optional.empty());
+
+        ShardingProperties properties = new ShardingProperties();
+        properties.getStores().put("napoli", new ShardingProperties.Store());
+        StoreRegistry storeRegistry = new StoreRegistry(properties, mock(DataSource.class), mock(SqlInspection.class));
+
+        idempotencyService = new IdempotencyServiceImpl(orderService, idempotencyRecordRepository, transactionTemplate,
+                storeRegistry, 100, Duration.ofMinutes(10), Duration.ofHours(24), "database");
+        orderDTO = new OrderDTO(1L, StoreContext.DEFAULT_STORE, "COD-21032025-0001", "Pizza Margherita", OrderStatusEnum.WAITING);
+    }
+
+    @Test
+    void testReplayIsServedFromMemory() {
+        when(orderService.createOrder("Pizza Margherita")).thenReturn(orderDTO);
+
+        // The first request creates the order, the retry gets the same order back
+        OrderDTO first = idempotencyService.createOrder("alice", "key-1", "Pizza Margherita");
+        OrderDTO replay = idempotencyService.createOrder("alice", "key-1", "Pizza Margherita");
+
+        assertSame(first, replay);
+        verify(orderService, times(1)).createOrder("Pizza Margherita");
+        verify(idempotencyRecordRepository, times(1)).saveAndFlush(any(IdempotencyRecord.class));
+        verify(idempotencyRecordRepository, times(1)).findById(MAIN_KEY_1); // The replay does not touch the database
+    }
+
+    @Test
+    void testConcurrentDuplicatesCollapse() throws Exception {
+        CountDownLatch creationStarted = new CountDownLatch(1);
+        CountDownLatch releaseCreation = new CountDownLatch(1);
+        when(orderService.createOrder("Pizza Margherita")).thenAnswer(invocation -> {
+            creationStarted.countDown();
+            releaseCreation.await(5, TimeUnit.SECONDS); // Keep the first execution in flight
+            return orderDTO;
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<OrderDTO> first = executor.submit(() -> idempotencyService.createOrder("alice", "key-1", "Pizza Margherita"));
+            assertTrue(creationStarted.await(5, TimeUnit.SECONDS));
+            Future<OrderDTO> duplicate = executor.submit(() -> idempotencyService.createOrder("alice", "key-1", "Pizza Margherita"));
+            releaseCreation.countDown();
+
+            assertSame(first.get(5, TimeUnit.SECONDS), duplicate.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+        verify(orderService, times(1)).createOrder("Pizza Margherita");
+    }
+
+    @Test
+    void testKeyStoredByAnotherNode() {
+        // Simulate a key already recorded in the durable table
+        when(idempotencyRecordRepository.findById(MAIN_KEY_1)).thenReturn(Optional.of(new IdempotencyRecord("key-1",
+                StoreContext.DEFAULT_STORE, "alice", 1L, "COD-21032025-0001", "Pizza Margherita", OrderStatusEnum.WAITING, Instant.now())));
+
+        OrderDTO result = idempotencyService.createOrder("alice", "key-1", "Pizza Margherita");
+
+        assertEquals(orderDTO, result);
+        verify(orderService, never()).createOrder(anyString());
+    }
+
+    @Test
+    void testKeyUsedInAnotherStore() {
+        when(idempotencyRecordRepository.findById(MAIN_KEY_1)).thenReturn(Optional.of(new IdempotencyRecord("key-1",
+                StoreContext.DEFAULT_STORE, "alice", 1L, "COD-21032025-0001", "Pizza Margherita", OrderStatusEnum.WAITING, Instant.now())));
+        OrderDTO napoliOrder = new OrderDTO(2L, "napoli", "COD-21032025-0001", "Pizza Margherita", OrderStatusEnum.WAITING);
+        when(orderService.createOrder("Pizza Margherita")).thenReturn(napoliOrder);
+
+        // The key was recorded by the main store, which shares the shard of the napoli store: napoli gets its own order
+        OrderDTO result = StoreContext.on("napoli", () -> idempotencyService.createOrder("alice", "key-1", "Pizza Margherita"));
+
+        assertEquals(napoliOrder, result);
+        verify(idempotencyRecordRepository).findById(new IdempotencyRecord.Key("napoli", "key-1"));
+        verify(orderService, times(1)).createOrder("Pizza Margherita");
+    }
+
+    @Test
+    void testKeyUsedByAnotherUser() {
+        when(idempotencyRecordRepository.findById(MAIN_KEY_1)).thenReturn(Optional.of(new IdempotencyRecord("key-1",
+                StoreContext.DEFAULT_STORE, "alice", 1L, "COD-21032025-0001", "Pizza Margherita", OrderStatusEnum.WAITING, Instant.now())));
+
+        // Sending the key and the description of another user does not give back the order of that user
+        assertThrows(IllegalArgumentException.class, () -> idempotencyService.createOrder("mallory", "key-1", "Pizza Margherita"));
+        assertEquals(orderDTO, idempotencyService.createOrder("alice", "key-1", "Pizza Margherita"));
+        verify(orderService, never()).createOrder(anyString());
+    }
+
+    @Test
+    void testKeyIsRejectedByTheEdgeStorageMode() {
+        IdempotencyServiceImpl edgeIdempotencyService = new IdempotencyServiceImpl(orderService, idempotencyRecordRepository,
+                transactionTemplate, mock(StoreRegistry.class), 100, Duration.ofMinutes(10), Duration.ofHours(24), "edge");
+
+        // The local order could not be recorded with its key: no order is created, so a retry cannot create a duplicate
+        assertThrows(IllegalArgumentException.class, () -> edgeIdempotencyService.createOrder("alice", "key-1", "Pizza Margherita"));
+        verify(orderService, never()).createOrder(anyString());
+    }
+
+    @Test
+    void testPurgeRunsOnEveryStore() {
+        idempotencyService.purgeExpiredKeys();
+
+        verify(idempotencyRecordRepository).deleteByStoreAndCreatedBefore(eq(StoreContext.DEFAULT_STORE), any(Instant.class));
+        verify(idempotencyRecordRepository).deleteByStoreAndCreatedBefore(eq("napoli"), any(Instant.class));
+    }
+
+    @Test
+    void testKeyReusedForDifferentOrder() {
+        when(orderService.createOrder("Pizza Margherita")).thenReturn(orderDTO);
+        idempotencyService.createOrder("alice", "key-1", "Pizza Margherita");
+
+        // The same key cannot be used to create a different order
+        assertThrows(IllegalArgumentException.class, () -> idempotencyService.createOrder("alice", "key-1", "Pizza Diavola"));
+    }
+
+    @Test
+    void testFailedCreationCanBeRetried() {
+        when(orderService.createOrder("Pizza Margherita"))
+                .thenThrow(new IllegalStateException("Database unavailable"))
+                .thenReturn(orderDTO);
+
+        assertThrows(IllegalStateException.class, () -> idempotencyService.createOrder("alice", "key-1", "Pizza Margherita"));
+
+        // The failed execution is not cached, so the retry creates the order
+        assertEquals(orderDTO, idempotencyService.createOrder("alice", "key-1", "Pizza Margherita"));
+        verify(orderService, times(2)).createOrder("Pizza Margherita");
+    }
+
+    @Test
+    void testBlankKeyIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> idempotencyService.createOrder("alice", " ", "Pizza Margherita"));
+        verifyNoInteractions(orderService);
+    }
+}
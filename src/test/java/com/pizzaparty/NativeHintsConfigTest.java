@@ -0,0 +1,53 @@
+package com.pizzaparty;
+
+import com.github.benmanes.caffeine.jcache.spi.CaffeineCachingProvider;
+import com.pizzaparty.config.NativeHintsConfig;
+import com.pizzaparty.entity.Order;
+import net.ttddyy.dsproxy.proxy.ProxyJdbcObject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+import org.springframework.security.access.expression.SecurityExpressionRoot;
+import org.springframework.security.access.prepost.PreAuthorize;
+
+import java.sql.PreparedStatement;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NativeHintsConfigTest {
+
+    private final RuntimeHints hints = new RuntimeHints();
+
+    @BeforeEach
+    void setUp() {
+        new NativeHintsConfig.PizzapartyRuntimeHints().registerHints(hints, getClass().getClassLoader());
+    }
+
+    @Test
+    void testEntitiesCanBeInstantiatedAndRead() {
+        assertTrue(RuntimeHintsPredicates.reflection().onType(Order.class)
+                .withMemberCategories(MemberCategory.INVOKE_DECLARED_CONSTRUCTORS, MemberCategory.DECLARED_FIELDS)
+                .test(hints));
+    }
+
+    @Test
+    void testCacheProviderCanBeLoaded() {
+        assertTrue(RuntimeHintsPredicates.reflection().onType(CaffeineCachingProvider.class)
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS).test(hints));
+        assertTrue(RuntimeHintsPredicates.resource().forResource("reference.conf").test(hints));
+    }
+
+    @Test
+    void testPreAuthorizeExpressionsCanBeEvaluated() {
+        assertTrue(RuntimeHintsPredicates.proxies().forInterfaces(PreAuthorize.class).test(hints));
+        assertTrue(RuntimeHintsPredicates.reflection().onType(SecurityExpressionRoot.class)
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_METHODS).test(hints));
+    }
+
+    @Test
+    void testJdbcObjectsCanBeProxied() {
+        assertTrue(RuntimeHintsPredicates.proxies().forInterfaces(ProxyJdbcObject.class, PreparedStatement.class).test(hints));
+    }
+}
@@ -2,41 +2,67 @@ package com.pizzaparty;
 
 import com.pizzaparty.controller.OrderController;
 import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.dto.OrderSearchResultDTO;
 import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.service.IdempotencyService;
 import com.pizzaparty.service.OrderService;
+import com.pizzaparty.service.PendingOrdersSnapshot;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.web.context.request.ServletWebRequest;
 
-import java.util.Collections;
+import java.nio.charset.StandardCharsets;
+import java.security.Principal;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 class OrderControllerTest {
 
     @Mock
     private OrderService orderService;
 
+    @Mock
+    private IdempotencyService idempotencyService;
+
+    @Mock
+    private PendingOrdersSnapshot pendingOrdersSnapshot;
+
     @InjectMocks
     private OrderController orderController;
 
     private OrderDTO orderDTO;
 
+    // The authenticated customer
+    private final Principal alice = new TestingAuthenticationToken("alice", null, "ROLE_CUSTOMER");
+
     @BeforeEach
     void setUp() {
         // Initialize the mocks
         MockitoAnnotations.openMocks(this);
 
         // Create a sample OrderDTO object
-        orderDTO = new OrderDTO(1L, "1234", "Pizza Margherita", OrderStatusEnum.WAITING);
+        orderDTO = new OrderDTO(1L, "main", "1234", "Pizza Margherita", OrderStatusEnum.WAITING);
         orderDTO.setId(1L);
         orderDTO.setDescription("Pizza Margherita");
     }
@@ -47,28 +73,101 @@ class OrderControllerTest {
         when(orderService.createOrder("Pizza Margherita")).thenReturn(orderDTO);
 
         // Call to the controller
-        ResponseEntity<OrderDTO> response = orderController.createOrder("Pizza Margherita");
+        ResponseEntity<OrderDTO> response = orderController.createOrder(alice, null, "Pizza Margherita");
 
         // Verify the result
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertNotNull(response.getBody());
         assertEquals("Pizza Margherita", response.getBody().getDescription());
         verify(orderService, times(1)).createOrder("Pizza Margherita");
+        verifyNoInteractions(idempotencyService);
     }
 
     @Test
-    void testGetPendingOrders() {
+    void testSearchOrders() {
         // Mocked behavior
-        List<OrderDTO> orders = Collections.singletonList(orderDTO);
-        when(orderService.getPendingOrders()).thenReturn(orders);
+        OrderSearchResultDTO result = new OrderSearchResultDTO(List.of(orderDTO), 0, 20, false);
+        when(orderService.searchOrders("margherita", 0, 20)).thenReturn(result);
 
         // Call to the controller
-        ResponseEntity<List<OrderDTO>> response = orderController.getPendingOrders();
+        ResponseEntity<OrderSearchResultDTO> response = orderController.searchOrders("margherita", 0, 20);
 
         // Verify the result
         assertEquals(HttpStatus.OK, response.getStatusCode());
-        assertEquals(1, Objects.requireNonNull(response.getBody()).size());
-        verify(orderService, times(1)).getPendingOrders();
+        assertSame(result, response.getBody());
+    }
+
+    @Test
+    void testCreateOrderWithIdempotencyKey() {
+        // Mocked behavior
+        when(idempotencyService.createOrder("alice", "key-1", "Pizza Margherita")).thenReturn(orderDTO);
+
+        // Call to the controller with an Idempotency-Key header
+        ResponseEntity<OrderDTO> response = orderController.createOrder(alice, "key-1", "Pizza Margherita");
+
+        // Verify that the creation went through the idempotency service
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(1L, Objects.requireNonNull(response.getBody()).getId());
+        verify(idempotencyService, times(1)).createOrder("alice", "key-1", "Pizza Margherita");
+        verify(orderService, never()).createOrder(anyString());
+    }
+
+    @Test
+    void testCreateOrderWithIdempotencyKeyWithoutAuthentication() throws Exception {
+        when(idempotencyService.createOrder("anonymous", "key-1", "Pizza Margherita")).thenReturn(orderDTO);
+        MockMvc mockMvc = MockMvcBuilders.standaloneSetup(orderController).build();
+
+        // Nothing authenticates the requests: the principal of the request is null
+        mockMvc.perform(post("/orders").header("Idempotency-Key", "key-1").param("description", "Pizza Margherita"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.id").value(1));
+        verify(idempotencyService, times(1)).createOrder("anonymous", "key-1", "Pizza Margherita");
+    }
+
+    @Test
+    void testGetPendingOrders() {
+        // Mocked behavior
+        byte[] json = "[{\"id\":1}]".getBytes(StandardCharsets.UTF_8);
+        when(pendingOrdersSnapshot.current()).thenReturn(new PendingOrdersSnapshot.Snapshot(1, "e-1", json, new byte[0], 0, 0));
+
+        // Call to the controller
+        ResponseEntity<byte[]> response = orderController.getPendingOrders(null, getRequest(null));
+
+        // Verify that the snapshot is written as it is, with its ETag
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(json, response.getBody());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        assertEquals("\"e-1\"", response.getHeaders().getETag());
+        verify(orderService, never()).getPendingOrders();
+    }
+
+    @Test
+    void testGetPendingOrdersNotModified() {
+        // Mocked behavior
+        byte[] json = "[{\"id\":1}]".getBytes(StandardCharsets.UTF_8);
+        when(pendingOrdersSnapshot.current()).thenReturn(new PendingOrdersSnapshot.Snapshot(1, "e-1", json, new byte[0], 0, 0));
+
+        // Call to the controller with the ETag of the current snapshot
+        ResponseEntity<byte[]> response = orderController.getPendingOrders(null, getRequest("\"e-1\""));
+
+        // Verify that the list is not sent again
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        assertNull(response.getBody());
+    }
+
+    @Test
+    void testGetPendingOrdersInCbor() {
+        // Mocked behavior
+        byte[] cbor = {(byte) 0x81, (byte) 0xa1};
+        when(pendingOrdersSnapshot.current()).thenReturn(new PendingOrdersSnapshot.Snapshot(1, "e-1", new byte[0], cbor, 0, 0));
+
+        // Call to the controller from a client preferring the binary format
+        ResponseEntity<byte[]> response = orderController.getPendingOrders("application/cbor, application/json;q=0.5", getRequest(null));
+
+        // Verify that the CBOR snapshot is written with its own ETag
+        assertSame(cbor, response.getBody());
+        assertEquals(MediaType.APPLICATION_CBOR, response.getHeaders().getContentType());
+        assertEquals("\"e-1-cbor\"", response.getHeaders().getETag());
     }
 
     @Test
@@ -102,14 +201,68 @@ class OrderControllerTest {
     @Test
     void testGetOrder() {
         // Mocked behavior
+        when(orderService.getOrderVersion("1234")).thenReturn(Optional.of(3L));
         when(orderService.getOrderByCode("1234")).thenReturn(orderDTO);
 
         // Call to the controller
-        ResponseEntity<OrderDTO> response = orderController.getOrder("1234");
+        ResponseEntity<OrderDTO> response = orderController.getOrder("1234", null, getRequest(null));
 
         // Verify the result
         assertEquals(HttpStatus.OK, response.getStatusCode());
         assertEquals("Pizza Margherita", Objects.requireNonNull(response.getBody()).getDescription());
+        assertEquals("\"3\"", response.getHeaders().getETag());
         verify(orderService, times(1)).getOrderByCode("1234");
     }
+
+    @Test
+    void testGetOrderNotModified() {
+        // Mocked behavior
+        when(orderService.getOrderVersion("1234")).thenReturn(Optional.of(3L));
+
+        // Call to the controller with the ETag of the current version
+        ResponseEntity<OrderDTO> response = orderController.getOrder("1234", null, getRequest("\"3\""));
+
+        // Verify that the order is not loaded
+        assertEquals(HttpStatus.NOT_MODIFIED, response.getStatusCode());
+        verify(orderService, never()).getOrderByCode(anyString());
+    }
+
+    @Test
+    void testGetOrderModified() {
+        // Mocked behavior: the order changed since the client's version
+        when(orderService.getOrderVersion("1234")).thenReturn(Optional.of(4L));
+        when(orderService.getOrderByCode("1234")).thenReturn(orderDTO);
+
+        // Call to the controller with an outdated ETag
+        ResponseEntity<OrderDTO> response = orderController.getOrder("1234", null, getRequest("\"3\""));
+
+        // Verify that the new version is returned
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"4\"", response.getHeaders().getETag());
+    }
+
+    @Test
+    void testGetOrderEtagDependsOnTheFormat() {
+        // Mocked behavior
+        when(orderService.getOrderVersion("1234")).thenReturn(Optional.of(3L));
+        when(orderService.getOrderByCode("1234")).thenReturn(orderDTO);
+
+        // The ETag of the JSON representation does not match the CBOR one
+        ResponseEntity<OrderDTO> response = orderController.getOrder("1234", MediaType.APPLICATION_CBOR_VALUE, getRequest("\"3\""));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals("\"3-cbor\"", response.getHeaders().getETag());
+        assertEquals(MediaType.APPLICATION_CBOR, response.getHeaders().getContentType());
+        assertEquals(HttpStatus.NOT_MODIFIED,
+                orderController.getOrder("1234", MediaType.APPLICATION_CBOR_VALUE, getRequest("\"3-cbor\"")).getStatusCode());
+    }
+
+    // Builds a GET request, optionally carrying an If-None-Match header
+    private static ServletWebRequest getRequest(String ifNoneMatch) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/orders");
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return new ServletWebRequest(request, new MockHttpServletResponse());
+    }
 }
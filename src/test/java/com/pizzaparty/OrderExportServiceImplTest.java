@@ -0,0 +1,126 @@
+package com.pizzaparty;
+
+import com.pizzaparty.enumeration.ExportFormatEnum;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.service.OrderExportServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.time.LocalDate;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class OrderExportServiceImplTest {
+
+    private static final String CSV = "id,order_code,description,status,version,preparation_started_at\n"
+            + "1,COD-01032025-0001,Pizza Margherita,READY,2,2025-03-01 19:00:00+00\n";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PGConnection pgConnection;
+
+    @Mock
+    private CopyManager copyManager;
+
+    private OrderExportServiceImpl orderExportService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this); // Initialize mocks
+
+        // Run the connection callback on a PostgreSQL connection whose COPY writes a fixed CSV
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyOut(anyString(), any(OutputStream.class))).thenAnswer(invocation -> {
+            invocation.<OutputStream>getArgument(1).write(CSV.getBytes(StandardCharsets.UTF_8));
+            return 1L;
+        });
+
+        orderExportService = new OrderExportServiceImpl(jdbcTemplate);
+    }
+
+    @Test
+    void testCsvIsCopiedToTheStream() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        long rows = orderExportService.exportOrders(ExportFormatEnum.CSV, null, null, null, out);
+
+        assertEquals(1, rows);
+        assertEquals(CSV, out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void testCompressedCsvIsCompleteGzip() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        orderExportService.exportOrders(ExportFormatEnum.CSV_GZIP, null, null, null, out);
+
+        // The stream is not closed, but the gzip trailer must be written
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(CSV, new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void testWriteFailureIsReportedAsIOException() throws Exception {
+        // The client went away while the file was being written
+        OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("Broken pipe");
+            }
+        };
+        when(copyManager.copyOut(anyString(), any(OutputStream.class))).thenAnswer(invocation -> {
+            OutputStream target = invocation.getArgument(1);
+            target.write(CSV.getBytes(StandardCharsets.UTF_8));
+            target.flush();
+            return 1L;
+        });
+
+        assertThrows(IOException.class, () -> orderExportService.exportOrders(ExportFormatEnum.CSV, null, null, null, out));
+    }
+
+    @Test
+    void testEmptyRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> orderExportService.exportOrders(ExportFormatEnum.CSV,
+                LocalDate.of(2025, 3, 31), LocalDate.of(2025, 3, 1), null, new ByteArrayOutputStream()));
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void testCopySqlFilters() {
+        String all = OrderExportServiceImpl.buildCopySql("main", null, null, null);
+        assertTrue(all.contains("WHERE store = 'main')"));
+        assertTrue(all.startsWith("COPY (SELECT id, order_code"));
+        assertTrue(all.endsWith("TO STDOUT WITH (FORMAT csv, HEADER true)"));
+
+        // The days are compared as yyyyMMdd, so that a range crossing months and years works
+        String filtered = OrderExportServiceImpl.buildCopySql("main", LocalDate.of(2024, 12, 1), LocalDate.of(2025, 1, 31), OrderStatusEnum.READY);
+        assertTrue(filtered.contains(">= '20241201'"));
+        assertTrue(filtered.contains("<= '20250131'"));
+        assertTrue(filtered.contains("status = 'READY'"));
+    }
+}
@@ -0,0 +1,153 @@
+package com.pizzaparty;
+
+import com.pizzaparty.config.Utils;
+import com.pizzaparty.dto.OrderImportResultDTO;
+import com.pizzaparty.enumeration.ExportFormatEnum;
+import com.pizzaparty.service.OrderImportServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.startsWith;
+import static org.mockito.Mockito.*;
+
+class OrderImportServiceImplTest {
+
+    private static final String CSV = "id,order_code,description,status,version,preparation_started_at\n"
+            + "1,COD-01032025-0001,Pizza Margherita,READY,2,2025-03-01 19:00:00+00\n"
+            + "2,COD-01032025-0002,Diavola,WAITING,0,\n";
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private PGConnection pgConnection;
+
+    @Mock
+    private CopyManager copyManager;
+
+    private OrderImportServiceImpl orderImportService;
+
+    // Content received by COPY
+    private final AtomicReference<String> copied = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        MockitoAnnotations.openMocks(this); // Initialize mocks
+
+        // Run the connection callback on a PostgreSQL connection whose COPY reads the whole input
+        when(jdbcTemplate.execute(any(ConnectionCallback.class)))
+                .thenAnswer(invocation -> invocation.<ConnectionCallback<?>>getArgument(0).doInConnection(connection));
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(anyString(), any(InputStream.class), anyInt())).thenAnswer(invocation -> {
+            copied.set(new String(invocation.<InputStream>getArgument(1).readAllBytes(), StandardCharsets.UTF_8));
+            return 2L;
+        });
+
+        orderImportService = new OrderImportServiceImpl(jdbcTemplate);
+    }
+
+    @Test
+    void testOrdersAreStagedValidatedAndInserted() throws Exception {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class))).thenReturn(List.of());
+        // The code counter of the store is advanced in the same statement, for the current day
+        LocalDate today = LocalDate.now();
+        when(jdbcTemplate.queryForObject(startsWith("WITH inserted"), eq(Long.class), eq("main"), eq("main"), eq("main"),
+                eq(today), eq(Utils.formatOrderDate(today)))).thenReturn(1L);
+
+        OrderImportResultDTO result = orderImportService.importOrders(ExportFormatEnum.CSV,
+                new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8)));
+
+        // One order inserted, the other one skipped because its code already exists
+        assertEquals(1, result.getImported());
+        assertEquals(1, result.getSkipped());
+        assertEquals(CSV, copied.get());
+        verify(jdbcTemplate).execute(startsWith("CREATE TEMPORARY TABLE order_import"));
+        verify(jdbcTemplate).queryForObject(contains("INSERT INTO order_code_sequence"), eq(Long.class), any(Object[].class));
+    }
+
+    @Test
+    void testCompressedFileIsDecompressed() throws Exception {
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class))).thenReturn(List.of());
+        when(jdbcTemplate.queryForObject(startsWith("WITH inserted"), eq(Long.class), any(Object[].class))).thenReturn(2L);
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(CSV.getBytes(StandardCharsets.UTF_8));
+        }
+
+        OrderImportResultDTO result = orderImportService.importOrders(ExportFormatEnum.CSV_GZIP,
+                new ByteArrayInputStream(compressed.toByteArray()));
+
+        assertEquals(2, result.getImported());
+        assertEquals(0, result.getSkipped());
+        assertEquals(CSV, copied.get());
+    }
+
+    @Test
+    void testInvalidOrdersRejectTheWholeImport() {
+        // Lines 2 and 3 of the staging table, i.e. lines 3 and 4 of the file
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class))).thenReturn(List.of(2L, 3L));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> orderImportService.importOrders(
+                ExportFormatEnum.CSV, new ByteArrayInputStream(CSV.getBytes(StandardCharsets.UTF_8))));
+
+        assertTrue(ex.getMessage().startsWith("Invalid orders at lines 3, 4:"));
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Long.class), any(Object[].class));
+    }
+
+    @Test
+    void testOrderCodesOfDaysThatDoNotExistAreInvalid() {
+        Pattern orderCode = Pattern.compile(OrderImportServiceImpl.ORDER_CODE_REGEX);
+
+        // Every day and month number of common, leap and century years, valid only if the day exists
+        for (int year : new int[] {1900, 2000, 2024, 2025}) {
+            for (int month = 1; month <= 12; month++) {
+                for (int day = 1; day <= 31; day++) {
+                    String code = String.format("COD-%02d%02d%04d-0001", day, month, year);
+                    assertEquals(isExistingDay(year, month, day), orderCode.matcher(code).matches(), code);
+                }
+            }
+        }
+        assertFalse(orderCode.matcher("COD-31022025-0001").matches());
+        assertFalse(orderCode.matcher("COD-00012025-0001").matches());
+        assertFalse(orderCode.matcher("COD-01132025-0001").matches());
+        assertFalse(orderCode.matcher("COD-01032025-001").matches());
+        assertTrue(orderCode.matcher("COD-29022024-12345").matches());
+    }
+
+    private static boolean isExistingDay(int year, int month, int day) {
+        try {
+            LocalDate.of(year, month, day);
+            return true;
+        } catch (DateTimeException ex) {
+            return false;
+        }
+    }
+}
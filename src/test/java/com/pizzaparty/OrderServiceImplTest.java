@@ -1,22 +1,36 @@
 package com.pizzaparty;
 
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.StoreRegistry;
+import com.pizzaparty.config.Utils;
 import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.dto.OrderSearchResultDTO;
 import com.pizzaparty.entity.Order;
+import com.pizzaparty.entity.OrderCodeSequence;
 import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.event.OrderChangedEvent;
+import com.pizzaparty.exceptions.OrderAlreadyInPreparationException;
 import com.pizzaparty.exceptions.OrderInvalidStateException;
 import com.pizzaparty.exceptions.OrderNotFoundException;
 import com.pizzaparty.mapper.OrderMapper;
+import com.pizzaparty.repository.OrderCodeSequenceRepository;
 import com.pizzaparty.repository.OrderRepository;
 import com.pizzaparty.service.OrderServiceImpl;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.QueryTimeoutException;
 
+import java.time.LocalDate;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 class OrderServiceImplTest {
@@ -24,24 +38,41 @@ class OrderServiceImplTest {
     @Mock
     private OrderRepository orderRepository;
 
+    @Mock
+    private OrderCodeSequenceRepository orderCodeSequenceRepository;
+
+    @Mock
+    private StoreRegistry storeRegistry;
+
     @Mock
     private OrderMapper orderMapper;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private OrderServiceImpl orderService;
 
     private Order order;
 
+    private OrderCodeSequence sequence;
+
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this); // Initialize mocks
         order = new Order("Pizza Margherita"); // Sample order
+        order.setStore(StoreContext.DEFAULT_STORE);
+
+        // The code counter of the main store, last used yesterday
+        sequence = new OrderCodeSequence(StoreContext.DEFAULT_STORE, LocalDate.now().minusDays(1), 42);
+        when(orderCodeSequenceRepository.findForUpdate(StoreContext.DEFAULT_STORE)).thenReturn(Optional.of(sequence));
+        when(storeRegistry.getPreparationLimit(StoreContext.DEFAULT_STORE)).thenReturn(1);
     }
 
     @Test
     void testCreateOrder() {
         // Simulate that the code does not yet exist in the database
-        when(orderRepository.existsByOrderCode(anyString())).thenReturn(false);
+        when(orderRepository.existsByStoreAndOrderCode(eq(StoreContext.DEFAULT_STORE), anyString())).thenReturn(false);
 
         // Simulate the repository behavior to save the order
         when(orderRepository.save(any(Order.class))).thenAnswer(invocation -> {
@@ -53,7 +84,7 @@ class OrderServiceImplTest {
         // Simulate the conversion of the order into DTO
         when(orderMapper.toDTO(any(Order.class))).thenAnswer(invocation -> {
             Order orderArg = invocation.getArgument(0);
-            return new OrderDTO(orderArg.getId(), orderArg.getOrderCode(), orderArg.getDescription(), OrderStatusEnum.WAITING);
+            return new OrderDTO(orderArg.getId(), orderArg.getStore(), orderArg.getOrderCode(), orderArg.getDescription(), OrderStatusEnum.WAITING);
         });
 
         // Run the test
@@ -65,8 +96,9 @@ class OrderServiceImplTest {
         assertNotNull(result.getOrderCode()); // The order code must be generated
         assertNotNull(result.getId()); // The ID must be generated
 
-        // Verify that the existsByOrderCode method was called
-        verify(orderRepository, atLeastOnce()).existsByOrderCode(anyString());
+        // Verify that the existsByStoreAndOrderCode method was called
+        verify(orderRepository, atLeastOnce()).existsByStoreAndOrderCode(eq(StoreContext.DEFAULT_STORE), anyString());
+        assertEquals(StoreContext.DEFAULT_STORE, result.getStore());
 
         // Verify that the order was saved and converted into DTO
         verify(orderRepository, times(1)).save(any(Order.class));
@@ -76,7 +108,7 @@ class OrderServiceImplTest {
     @Test
     void testTakeCharge() {
         // Prepare the mock behavior of the repository and mapper
-        OrderDTO orderDTO = new OrderDTO(order.getId(), order.getOrderCode(), order.getDescription(), OrderStatusEnum.PREPARATION);
+        OrderDTO orderDTO = new OrderDTO(order.getId(), order.getStore(), order.getOrderCode(), order.getDescription(), OrderStatusEnum.PREPARATION);
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));  // Simulate retrieving the order
         when(orderRepository.save(any(Order.class))).thenReturn(order);  // Simulate saving the updated order
         when(orderMapper.toDTO(order)).thenReturn(orderDTO);  // Simulate the conversion of the order into DTO
@@ -89,15 +121,20 @@ class OrderServiceImplTest {
         assertEquals(OrderStatusEnum.PREPARATION, result.getStatus());
         assertEquals("Pizza Margherita", result.getDescription());
 
-        verify(orderRepository, times(1)).findById(1L);  // Verify retrieving the order
+        // The store is locked before the order is read, so that concurrent takes in charge cannot exceed the limit
+        InOrder inOrder = inOrder(orderCodeSequenceRepository, orderRepository);
+        inOrder.verify(orderCodeSequenceRepository).findForUpdate(StoreContext.DEFAULT_STORE);
+        inOrder.verify(orderRepository, times(1)).findById(1L);  // Verify retrieving the order
+        inOrder.verify(orderRepository).countByStoreAndStatus(StoreContext.DEFAULT_STORE, OrderStatusEnum.PREPARATION);
         verify(orderRepository, times(1)).save(any(Order.class));  // Verify saving the updated order
+        verify(eventPublisher, times(1)).publishEvent(any(OrderChangedEvent.class));  // Verify the change was published
     }
 
     @Test
     void testCompleteOrder() {
         // Prepare the mock behavior of the repository and mapper
         order.setStatus(OrderStatusEnum.PREPARATION);  // Simulate the order being in preparation
-        OrderDTO orderDTO = new OrderDTO(order.getId(), order.getOrderCode(), order.getDescription(), OrderStatusEnum.READY);
+        OrderDTO orderDTO = new OrderDTO(order.getId(), order.getStore(), order.getOrderCode(), order.getDescription(), OrderStatusEnum.READY);
 
         // Simulate retrieving the order with ID 1 and status IN_PREPARATION
         when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
@@ -124,8 +161,8 @@ class OrderServiceImplTest {
     @Test
     void testGetOrderByCode() {
         // Prepare the mock behavior of the repository and mapper
-        OrderDTO orderDTO = new OrderDTO(order.getId(), order.getOrderCode(), order.getDescription(), OrderStatusEnum.WAITING);
-        when(orderRepository.findByOrderCode("COD-21032025-0001")).thenReturn(Optional.of(order));  // Simulate retrieving the order by code
+        OrderDTO orderDTO = new OrderDTO(order.getId(), order.getStore(), order.getOrderCode(), order.getDescription(), OrderStatusEnum.WAITING);
+        when(orderRepository.findByStoreAndOrderCode(StoreContext.DEFAULT_STORE, "COD-21032025-0001")).thenReturn(Optional.of(order));  // Simulate retrieving the order by code
         when(orderMapper.toDTO(order)).thenReturn(orderDTO);  // Simulate converting the order into DTO
 
         // Run the test
@@ -136,13 +173,13 @@ class OrderServiceImplTest {
         assertEquals("Pizza Margherita", result.getDescription());
         assertEquals(OrderStatusEnum.WAITING, result.getStatus());
 
-        verify(orderRepository, times(1)).findByOrderCode("COD-21032025-0001");  // Verify retrieving the order by code
+        verify(orderRepository, times(1)).findByStoreAndOrderCode(StoreContext.DEFAULT_STORE, "COD-21032025-0001");  // Verify retrieving the order by code
     }
 
     @Test
     void testGetOrderByCodeNotFound() {
         // Simulate the case where the order does not exist
-        when(orderRepository.findByOrderCode("COD-21032025-0001")).thenReturn(Optional.empty());
+        when(orderRepository.findByStoreAndOrderCode(StoreContext.DEFAULT_STORE, "COD-21032025-0001")).thenReturn(Optional.empty());
 
         // Run the test and verify that an exception is thrown
         assertThrows(OrderNotFoundException.class, () -> orderService.getOrderByCode("COD-21032025-0001"));
@@ -162,14 +199,14 @@ class OrderServiceImplTest {
     @Test
     void testCreateOrderWithUniqueCode() {
         // Simulate repository behavior to avoid conflicts
-        when(orderRepository.existsByOrderCode(anyString())).thenReturn(false);  // Ensure that the code does not already exist
+        when(orderRepository.existsByStoreAndOrderCode(anyString(), anyString())).thenReturn(false);  // Ensure that the code does not already exist
 
         // Simulate the save behavior and the mapper
         Order order = new Order("Pizza Margherita");
         order.setId(1L);  // Simulate ID assignment
         order.setOrderCode("COD-21032025-0001");
 
-        OrderDTO orderDTO = new OrderDTO(order.getId(), order.getOrderCode(), order.getDescription(), OrderStatusEnum.WAITING);
+        OrderDTO orderDTO = new OrderDTO(order.getId(), order.getStore(), order.getOrderCode(), order.getDescription(), OrderStatusEnum.WAITING);
 
         // Simulate repository and mapper behavior
         when(orderRepository.save(any(Order.class))).thenReturn(order);  // Save the order
@@ -187,4 +224,106 @@ class OrderServiceImplTest {
         verify(orderRepository, times(1)).save(any(Order.class));  // Verify that save was called
         verify(orderMapper, times(1)).toDTO(any(Order.class));  // Verify that toDTO was called
     }
+
+    @Test
+    void testCreateOrderContinuesTheCounterOfTheStore() {
+        sequence.setOrderDay(LocalDate.now());  // The counter was already used today
+        String today = Utils.formatOrderDate(LocalDate.now());
+        // The next code was taken by an imported order
+        when(orderRepository.existsByStoreAndOrderCode(StoreContext.DEFAULT_STORE, "COD-" + today + "-0043")).thenReturn(true);
+        when(orderMapper.toDTO(any(Order.class))).thenAnswer(invocation -> {
+            Order orderArg = invocation.getArgument(0);
+            return new OrderDTO(orderArg.getId(), orderArg.getStore(), orderArg.getOrderCode(), orderArg.getDescription(), orderArg.getStatus());
+        });
+
+        OrderDTO result = orderService.createOrder("Pizza Margherita");
+
+        assertEquals("COD-" + today + "-0044", result.getOrderCode());
+        assertEquals(44, sequence.getLastCounter());
+    }
+
+    @Test
+    void testCreateOrderRestartsTheCounterOnANewDay() {
+        when(orderMapper.toDTO(any(Order.class))).thenAnswer(invocation -> {
+            Order orderArg = invocation.getArgument(0);
+            return new OrderDTO(orderArg.getId(), orderArg.getStore(), orderArg.getOrderCode(), orderArg.getDescription(), orderArg.getStatus());
+        });
+
+        OrderDTO result = orderService.createOrder("Pizza Margherita");
+
+        assertTrue(result.getOrderCode().endsWith("-0001"));
+        assertEquals(LocalDate.now(), sequence.getOrderDay());
+    }
+
+    @Test
+    void testTakeChargeRespectsThePreparationLimitOfTheStore() {
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+        when(orderRepository.countByStoreAndStatus(StoreContext.DEFAULT_STORE, OrderStatusEnum.PREPARATION)).thenReturn(1);
+
+        // One order in preparation is the limit of the main store
+        assertThrows(OrderAlreadyInPreparationException.class, () -> orderService.takeCharge(1L));
+
+        // A store with a larger oven accepts a second order
+        when(storeRegistry.getPreparationLimit(StoreContext.DEFAULT_STORE)).thenReturn(2);
+        when(orderRepository.save(any(Order.class))).thenReturn(order);
+        orderService.takeCharge(1L);
+        assertEquals(OrderStatusEnum.PREPARATION, order.getStatus());
+    }
+
+    @Test
+    void testOrderOfAnotherStoreIsNotFound() {
+        order.setStore("napoli");
+        when(orderRepository.findById(1L)).thenReturn(Optional.of(order));
+
+        // The order exists on the shard, but not in the current (main) store
+        assertThrows(OrderNotFoundException.class, () -> orderService.takeCharge(1L));
+        assertThrows(OrderNotFoundException.class, () -> orderService.completeOrder(1L));
+        verify(orderRepository, never()).save(any(Order.class));
+    }
+
+    @Test
+    void testSearchOrdersReturnsOnePageAndTellsIfThereIsANext() {
+        // Simulate three matches for a page of two: the third one only tells that a next page exists
+        when(orderRepository.search(StoreContext.DEFAULT_STORE, "margherita senza glutine", OrderServiceImpl.MAX_SEARCH_CANDIDATES, 3, 2))
+                .thenReturn(List.of(order, new Order("Pizza Margherita senza glutine"), new Order("Margherita")));
+        when(orderMapper.toDTO(any(Order.class))).thenAnswer(invocation -> {
+            Order orderArg = invocation.getArgument(0);
+            return new OrderDTO(orderArg.getId(), orderArg.getStore(), orderArg.getOrderCode(), orderArg.getDescription(), orderArg.getStatus());
+        });
+
+        OrderSearchResultDTO result = orderService.searchOrders("  margherita senza glutine ", 1, 2);
+
+        assertEquals(2, result.getOrders().size());
+        assertEquals(1, result.getPage());
+        assertTrue(result.isHasNext());
+    }
+
+    @Test
+    void testSearchOrdersBeyondTheRankedMatchesIsEmpty() {
+        OrderSearchResultDTO result = orderService.searchOrders("margherita",
+                OrderServiceImpl.MAX_SEARCH_CANDIDATES / 20, 20);
+
+        assertTrue(result.getOrders().isEmpty());
+        assertFalse(result.isHasNext());
+        verify(orderRepository, never()).search(anyString(), anyString(), anyInt(), anyInt(), anyInt());  // The database is not queried
+    }
+
+    @Test
+    void testSearchOrdersThatTimesOutAsksToRefineTheText() {
+        // Simulate a statement cancelled by the timeout of the search
+        when(orderRepository.search(anyString(), anyString(), anyInt(), anyInt(), anyInt()))
+                .thenThrow(new QueryTimeoutException("canceling statement due to statement timeout"));
+
+        IllegalArgumentException ex = assertThrows(IllegalArgumentException.class, () -> orderService.searchOrders("pizza", 0, 20));
+
+        assertTrue(ex.getMessage().contains("refine"));
+    }
+
+    @Test
+    void testSearchOrdersRejectsInvalidRequests() {
+        assertThrows(IllegalArgumentException.class, () -> orderService.searchOrders(" ", 0, 20));
+        assertThrows(IllegalArgumentException.class, () -> orderService.searchOrders("a".repeat(101), 0, 20));
+        assertThrows(IllegalArgumentException.class, () -> orderService.searchOrders("margherita", -1, 20));
+        assertThrows(IllegalArgumentException.class, () -> orderService.searchOrders("margherita", 0, 101));
+    }
 }
@@ -0,0 +1,431 @@
+package com.pizzaparty;
+
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.StoreRegistry;
+import com.pizzaparty.config.Utils;
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.exceptions.OrderAlreadyInPreparationException;
+import com.pizzaparty.exceptions.OrderInvalidStateException;
+import com.pizzaparty.exceptions.OrderNotFoundException;
+import com.pizzaparty.service.OrderServiceImpl;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Stress test of the order state machine against a real database (H2 in PostgreSQL mode).
+ * Threads create orders in two stores, move them through WAITING → PREPARATION → READY and read them back,
+ * all at the same time, while the invocation and the response of every operation are recorded.
+ * The history is then checked for linearizability against the model of the state machine: every operation
+ * must take effect at one instant between its invocation and its response, as if the operations ran one at a time.
+ * <p>
+ * Searching every linearization of thousands of operations is out of reach, so the history is checked order by order
+ * and store by store against conditions that any linearization meets: an order changes status at most twice,
+ * always in the same order, every result matches a status the order may have had during the operation,
+ * codes follow the real-time order of the creations, and a store never has more orders in preparation than its limit.
+ * A violation is therefore reported only if no linearization can explain it.
+ * Tagged "stress", it only runs with the stress profile: mvn -Pstress test -Dtest=OrderStateMachineStressTest.
+ * The load can be changed with -Dstress.operations=100000 -Dstress.threads=32.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stress;MODE=PostgreSQL;LOCK_TIMEOUT=10000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.properties.hibernate.auto_quote_keyword=true",
+        "pizzaparty.stats.flush-interval=PT1H", // The rollups use PostgreSQL upserts
+        "pizzaparty.sharding.stores.napoli.preparation-limit=3"
+})
+@Tag("stress")
+class OrderStateMachineStressTest {
+
+    private static final Logger logger = LoggerFactory.getLogger(OrderStateMachineStressTest.class);
+
+    private static final int THREADS = Integer.getInteger("stress.threads", 16);
+
+    private static final int OPERATIONS = Integer.getInteger("stress.operations", 4_000);
+
+    private static final List<String> STORES = List.of(StoreContext.DEFAULT_STORE, "napoli");
+
+    // Operations target the most recent orders, so that they contend on the same rows
+    private static final int RECENT_ORDERS = 16;
+
+    // Order of the codes: by day, then by counter
+    private static final Comparator<Operation> BY_CODE = Comparator
+            .comparing((Operation operation) -> Utils.parseOrderDate(operation.orderCode()))
+            .thenComparingInt(operation -> Integer.parseInt(operation.orderCode().substring(13)));
+
+    @Autowired
+    private OrderServiceImpl orderService;
+
+    @Autowired
+    private StoreRegistry storeRegistry;
+
+    @Test
+    void testHistoryIsLinearizable() throws Exception {
+        Map<String, Workload> workloads = STORES.stream().collect(Collectors.toMap(store -> store, store -> new Workload()));
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<List<Operation>>> threads = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            threads.add(executor.submit(() -> {
+                start.await();
+                List<Operation> history = new ArrayList<>();
+                for (int j = 0; j < OPERATIONS / THREADS; j++) {
+                    String store = STORES.get(ThreadLocalRandom.current().nextInt(STORES.size()));
+                    history.add(StoreContext.on(store, () -> runRandomOperation(store, workloads.get(store))));
+                }
+                return history;
+            }));
+        }
+
+        long startedAt = System.nanoTime();
+        start.countDown();
+        List<Operation> history = new ArrayList<>();
+        for (Future<List<Operation>> thread : threads) {
+            history.addAll(thread.get());
+        }
+        long elapsed = System.nanoTime() - startedAt;
+        executor.shutdown();
+
+        Map<Type, Map<Outcome, Long>> outcomes = history.stream().collect(Collectors.groupingBy(Operation::type,
+                () -> new EnumMap<>(Type.class), Collectors.groupingBy(Operation::outcome, Collectors.counting())));
+        logger.info("{} operations by {} threads in {} ms: {} operations/s, outcomes {}", history.size(), THREADS,
+                elapsed / 1_000_000, Math.round(history.size() * 1e9 / elapsed), outcomes);
+
+        List<String> violations = new ArrayList<>();
+        for (String store : STORES) {
+            List<Operation> storeHistory = history.stream().filter(operation -> operation.store().equals(store)).toList();
+            checkCreates(store, storeHistory, violations);
+            checkOrders(store, storeHistory, violations);
+            checkPreparationLimit(store, storeHistory, violations);
+        }
+        assertTrue(outcomes.get(Type.TAKE_CHARGE).containsKey(Outcome.OK), "No order was taken in charge");
+        assertTrue(outcomes.get(Type.COMPLETE).containsKey(Outcome.OK), "No order was completed");
+        assertEquals(List.of(), violations.stream().limit(20).toList(), violations.size() + " violations");
+    }
+
+    // Runs a random operation on the orders of a store and records it
+    private Operation runRandomOperation(String store, Workload workload) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int choice = random.nextInt(100);
+        if (choice < 30 || !workload.hasCreated()) {
+            return record(store, Type.CREATE, null, () -> workload.created(orderService.createOrder("Pizza Margherita")));
+        }
+        if (choice < 60) {
+            OrderDTO order = workload.pickCreated(random);
+            return record(store, Type.TAKE_CHARGE, order, () -> workload.taken(orderService.takeCharge(order.getId())));
+        }
+        if (choice < 85 && workload.hasTaken()) {
+            OrderDTO order = workload.pickTaken(random);
+            return record(store, Type.COMPLETE, order, () -> orderService.completeOrder(order.getId()));
+        }
+        OrderDTO order = workload.pickCreated(random);
+        return record(store, Type.READ, order, () -> orderService.getOrderByCode(order.getOrderCode()));
+    }
+
+    // Runs an operation, recording when it was invoked, when it returned and its outcome
+    private static Operation record(String store, Type type, OrderDTO target, Supplier<OrderDTO> call) {
+        long invokedAt = System.nanoTime();
+        OrderDTO result = null;
+        Outcome outcome;
+        try {
+            result = call.get();
+            outcome = Outcome.OK;
+        } catch (OrderInvalidStateException ex) {
+            outcome = Outcome.INVALID_STATE;
+        } catch (OrderAlreadyInPreparationException ex) {
+            outcome = Outcome.LIMIT_REACHED;
+        } catch (OptimisticLockingFailureException ex) {
+            outcome = Outcome.CONFLICT;
+        } catch (OrderNotFoundException ex) {
+            outcome = Outcome.NOT_FOUND;
+        }
+        long completedAt = System.nanoTime();
+        OrderDTO order = result != null ? result : target;
+        return new Operation(type, store, order == null ? null : order.getId(), order == null ? null : order.getOrderCode(),
+                result == null ? null : result.getStatus(), outcome, invokedAt, completedAt);
+    }
+
+    // Codes are unique, and an order created after another one returned gets a higher code
+    private static void checkCreates(String store, List<Operation> history, List<String> violations) {
+        List<Operation> creates = history.stream()
+                .filter(operation -> operation.type() == Type.CREATE)
+                .toList();
+        creates.stream().filter(operation -> operation.outcome() != Outcome.OK)
+                .forEach(operation -> violations.add(store + ": creation failed with " + operation.outcome()));
+        List<Operation> created = creates.stream().filter(operation -> operation.outcome() == Outcome.OK).toList();
+
+        Set<String> codes = new HashSet<>();
+        Set<Long> ids = new HashSet<>();
+        for (Operation operation : created) {
+            if (!codes.add(operation.orderCode())) {
+                violations.add(store + ": code " + operation.orderCode() + " given to two orders");
+            }
+            if (!ids.add(operation.orderId())) {
+                violations.add(store + ": ID " + operation.orderId() + " given to two orders");
+            }
+        }
+
+        // Sweep the creations by invocation, knowing the highest code of those that returned before
+        List<Operation> byCompletion = created.stream().sorted(Comparator.comparingLong(Operation::completedAt)).toList();
+        List<Operation> byInvocation = created.stream().sorted(Comparator.comparingLong(Operation::invokedAt)).toList();
+        int returned = 0;
+        Operation highest = null;
+        for (Operation operation : byInvocation) {
+            while (returned < byCompletion.size() && byCompletion.get(returned).completedAt() < operation.invokedAt()) {
+                Operation previous = byCompletion.get(returned++);
+                if (highest == null || BY_CODE.compare(previous, highest) > 0) {
+                    highest = previous;
+                }
+            }
+            if (highest != null && BY_CODE.compare(operation, highest) <= 0) {
+                violations.add(store + ": " + operation.orderCode() + " created after " + highest.orderCode() + " returned");
+            }
+        }
+    }
+
+    // Every order goes through WAITING → PREPARATION → READY once, and every result matches a possible status
+    private void checkOrders(String store, List<Operation> history, List<String> violations) {
+        Map<Long, List<Operation>> byOrder = history.stream()
+                .filter(operation -> operation.orderId() != null)
+                .collect(Collectors.groupingBy(Operation::orderId));
+        for (Map.Entry<Long, List<Operation>> entry : byOrder.entrySet()) {
+            Transitions transitions = Transitions.of(entry.getValue(), violations);
+            if (transitions == null) {
+                continue;
+            }
+            for (Operation operation : entry.getValue()) {
+                String error = transitions.check(operation);
+                if (error != null) {
+                    violations.add(store + ": " + operation + " " + error);
+                }
+            }
+
+            // The final status is the one left by the successful transitions
+            OrderDTO order = StoreContext.on(store, () -> orderService.getOrderByCode(transitions.orderCode));
+            if (order.getStatus() != transitions.finalStatus()) {
+                violations.add(store + ": order " + order.getOrderCode() + " ended " + order.getStatus()
+                        + " instead of " + transitions.finalStatus());
+            }
+        }
+    }
+
+    // No more orders than the limit are ever in preparation, and the limit is only reached when it could be
+    private void checkPreparationLimit(String store, List<Operation> history, List<String> violations) {
+        int limit = storeRegistry.getPreparationLimit(store);
+        Map<Long, List<Operation>> byOrder = history.stream()
+                .filter(operation -> operation.orderId() != null)
+                .collect(Collectors.groupingBy(Operation::orderId));
+        // When each order was surely in preparation, and when it may have been
+        List<long[]> surely = new ArrayList<>();
+        Map<Long, long[]> possibly = new HashMap<>();
+        for (Map.Entry<Long, List<Operation>> entry : byOrder.entrySet()) {
+            Transitions transitions = Transitions.of(entry.getValue(), new ArrayList<>());
+            if (transitions == null || transitions.takeCharge == null) {
+                continue;
+            }
+            Operation complete = transitions.complete;
+            surely.add(new long[]{transitions.takeCharge.completedAt(), complete == null ? Long.MAX_VALUE : complete.invokedAt()});
+            possibly.put(entry.getKey(), new long[]{transitions.takeCharge.invokedAt(),
+                    complete == null ? Long.MAX_VALUE : complete.completedAt()});
+        }
+
+        // The orders still in preparation at the end are surely in preparation until then
+        int maximum = maximumOverlap(surely, Long.MIN_VALUE, Long.MAX_VALUE);
+        if (maximum > limit) {
+            violations.add(store + ": " + maximum + " orders in preparation at the same time, the limit is " + limit);
+        }
+        for (Operation operation : history) {
+            if (operation.outcome() == Outcome.LIMIT_REACHED) {
+                List<long[]> others = possibly.entrySet().stream()
+                        .filter(entry -> !entry.getKey().equals(operation.orderId()))
+                        .map(Map.Entry::getValue)
+                        .toList();
+                if (maximumOverlap(others, operation.invokedAt(), operation.completedAt()) < limit) {
+                    violations.add(store + ": " + operation + " while fewer than " + limit + " orders could be in preparation");
+                }
+            }
+        }
+    }
+
+    // Highest number of intervals overlapping at an instant of a window
+    private static int maximumOverlap(List<long[]> intervals, long from, long to) {
+        List<long[]> events = new ArrayList<>();
+        for (long[] interval : intervals) {
+            long start = Math.max(interval[0], from);
+            long end = Math.min(interval[1], to);
+            if (start <= end) {
+                events.add(new long[]{start, 1});
+                events.add(new long[]{end, -1});
+            }
+        }
+        // At the same instant, intervals start before others end: they are closed
+        events.sort(Comparator.<long[]>comparingLong(event -> event[0]).thenComparingLong(event -> -event[1]));
+        int current = 0;
+        int maximum = 0;
+        for (long[] event : events) {
+            current += event[1];
+            maximum = Math.max(maximum, current);
+        }
+        return maximum;
+    }
+
+    private enum Type { CREATE, TAKE_CHARGE, COMPLETE, READ }
+
+    private enum Outcome { OK, INVALID_STATE, LIMIT_REACHED, CONFLICT, NOT_FOUND }
+
+    /**
+     * An operation of the history. Times are System.nanoTime() values.
+     *
+     * @param orderId The order targeted or created; null for a failed creation.
+     * @param status The status returned by the operation, or null if it failed.
+     */
+    private record Operation(Type type, String store, Long orderId, String orderCode, OrderStatusEnum status,
+                             Outcome outcome, long invokedAt, long completedAt) {
+    }
+
+    /**
+     * The successful operations of an order: its creation and the transitions that took effect.
+     * An order is WAITING until its take in charge takes effect, which happens at an unknown instant between
+     * the invocation and the response of the take in charge; the same goes for PREPARATION and the completion.
+     */
+    private record Transitions(String orderCode, Operation create, Operation takeCharge, Operation complete) {
+
+        // Null (with a violation) if the transitions cannot be ordered at all
+        static Transitions of(List<Operation> operations, List<String> violations) {
+            Map<Type, List<Operation>> successful = operations.stream()
+                    .filter(operation -> operation.outcome() == Outcome.OK)
+                    .collect(Collectors.groupingBy(Operation::type));
+            Operation create = single(successful, Type.CREATE, violations);
+            Operation takeCharge = single(successful, Type.TAKE_CHARGE, violations);
+            Operation complete = single(successful, Type.COMPLETE, violations);
+            if (create == null || successful.getOrDefault(Type.TAKE_CHARGE, List.of()).size() > 1
+                    || successful.getOrDefault(Type.COMPLETE, List.of()).size() > 1) {
+                return null;
+            }
+            if (complete != null && (takeCharge == null || complete.completedAt() < takeCharge.invokedAt())) {
+                violations.add(complete + " completed an order that was not taken in charge");
+                return null;
+            }
+            return new Transitions(create.orderCode(), create, takeCharge, complete);
+        }
+
+        private static Operation single(Map<Type, List<Operation>> successful, Type type, List<String> violations) {
+            List<Operation> operations = successful.getOrDefault(type, List.of());
+            if (operations.size() > 1) {
+                violations.add(type + " succeeded " + operations.size() + " times on order " + operations.get(0).orderCode());
+            }
+            return operations.isEmpty() ? null : operations.get(0);
+        }
+
+        OrderStatusEnum finalStatus() {
+            return complete != null ? OrderStatusEnum.READY : takeCharge != null ? OrderStatusEnum.PREPARATION : OrderStatusEnum.WAITING;
+        }
+
+        // Whether the order may have had a status at an instant of the window of an operation
+        boolean mayBe(OrderStatusEnum status, Operation operation) {
+            return switch (status) {
+                case WAITING -> takeCharge == null || takeCharge.completedAt() > operation.invokedAt();
+                case PREPARATION -> takeCharge != null && takeCharge.invokedAt() < operation.completedAt()
+                        && (complete == null || complete.completedAt() > operation.invokedAt());
+                case READY -> complete != null && complete.invokedAt() < operation.completedAt();
+            };
+        }
+
+        // Null if the outcome of the operation is possible, otherwise the reason why it is not
+        String check(Operation operation) {
+            if (operation.invokedAt() > operation.completedAt() || operation.completedAt() < create.invokedAt()) {
+                return "ran before the creation of the order";
+            }
+            return switch (operation.outcome()) {
+                case OK -> switch (operation.type()) {
+                    case CREATE -> null;
+                    case TAKE_CHARGE -> mayBe(OrderStatusEnum.WAITING, operation) ? null : "took charge of an order not waiting";
+                    case COMPLETE -> mayBe(OrderStatusEnum.PREPARATION, operation) ? null : "completed an order not in preparation";
+                    case READ -> mayBe(operation.status(), operation) ? null : "read an impossible status";
+                };
+                // Rejected: the order must have been in another status at some instant
+                case INVALID_STATE -> switch (operation.type()) {
+                    case TAKE_CHARGE -> mayBe(OrderStatusEnum.PREPARATION, operation) || mayBe(OrderStatusEnum.READY, operation)
+                            ? null : "rejected although the order was waiting";
+                    case COMPLETE -> mayBe(OrderStatusEnum.WAITING, operation) || mayBe(OrderStatusEnum.READY, operation)
+                            ? null : "rejected although the order was in preparation";
+                    default -> "unexpected outcome";
+                };
+                // The limit is checked once the order is known to be waiting
+                case LIMIT_REACHED -> operation.type() == Type.TAKE_CHARGE && mayBe(OrderStatusEnum.WAITING, operation)
+                        ? null : "limit reached on an order not waiting";
+                // Rolled back because another transaction changed the order in the meantime
+                case CONFLICT -> operation.type() != Type.CREATE && operation.type() != Type.READ
+                        && (takeCharge != null && takeCharge != operation && takeCharge.invokedAt() < operation.completedAt()
+                        || complete != null && complete != operation && complete.invokedAt() < operation.completedAt())
+                        ? null : "conflict without a concurrent change";
+                case NOT_FOUND -> "order not found";
+            };
+        }
+    }
+
+    // Orders created and taken in charge so far in a store, from which the operations pick their target
+    private static class Workload {
+
+        private final List<OrderDTO> created = new ArrayList<>();
+
+        private final List<OrderDTO> taken = new ArrayList<>();
+
+        synchronized OrderDTO created(OrderDTO order) {
+            created.add(order);
+            return order;
+        }
+
+        synchronized OrderDTO taken(OrderDTO order) {
+            taken.add(order);
+            return order;
+        }
+
+        synchronized boolean hasCreated() {
+            return !created.isEmpty();
+        }
+
+        synchronized boolean hasTaken() {
+            return !taken.isEmpty();
+        }
+
+        synchronized OrderDTO pickCreated(ThreadLocalRandom random) {
+            return pick(created, random);
+        }
+
+        synchronized OrderDTO pickTaken(ThreadLocalRandom random) {
+            return pick(taken, random);
+        }
+
+        private static OrderDTO pick(List<OrderDTO> orders, ThreadLocalRandom random) {
+            return orders.get(orders.size() - 1 - random.nextInt(Math.min(orders.size(), RECENT_ORDERS)));
+        }
+    }
+}
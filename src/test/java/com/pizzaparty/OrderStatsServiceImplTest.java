@@ -0,0 +1,170 @@
+package com.pizzaparty;
+
+import com.pizzaparty.config.ShardingProperties;
+import com.pizzaparty.config.SqlInspection;
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.StoreRegistry;
+import com.pizzaparty.dto.OrderDailyStatsDTO;
+import com.pizzaparty.entity.OrderDailyStats;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.event.OrderChangedEvent;
+import com.pizzaparty.repository.OrderDailyStatsRepository;
+import com.pizzaparty.service.OrderStatsServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class OrderStatsServiceImplTest {
+
+    private static final LocalDate DAY = LocalDate.of(2025, 3, 21);
+
+    @Mock
+    private OrderDailyStatsRepository orderDailyStatsRepository;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    private OrderStatsServiceImpl orderStatsService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this); // Initialize mocks
+
+        // Run the transaction callbacks directly in the calling thread
+        when(transactionTemplate.execute(any())).thenAnswer(invocation ->
+                invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+
+        ShardingProperties properties = new ShardingProperties();
+        properties.getStores().put("napoli", new ShardingProperties.Store());
+        StoreRegistry storeRegistry = new StoreRegistry(properties, mock(DataSource.class), mock(SqlInspection.class));
+
+        orderStatsService = new OrderStatsServiceImpl(orderDailyStatsRepository, transactionTemplate, storeRegistry);
+    }
+
+    @Test
+    void testChangesAreAccumulatedAndWrittenOncePerDay() {
+        when(orderDailyStatsRepository.addChanges(any(), any(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(1);
+        // Two orders created, one taken in charge and completed in 90 seconds
+        orderStatsService.onOrderChanged(new OrderChangedEvent(1L, "COD-21032025-0001", null, OrderStatusEnum.WAITING));
+        orderStatsService.onOrderChanged(new OrderChangedEvent(2L, "COD-21032025-0002", null, OrderStatusEnum.WAITING));
+        orderStatsService.onOrderChanged(new OrderChangedEvent(1L, "COD-21032025-0001", OrderStatusEnum.WAITING, OrderStatusEnum.PREPARATION));
+        orderStatsService.onOrderChanged(new OrderChangedEvent(1L, "COD-21032025-0001", OrderStatusEnum.PREPARATION,
+                OrderStatusEnum.READY, Duration.ofSeconds(90)));
+
+        orderStatsService.flush();
+
+        verify(orderDailyStatsRepository).addChanges(StoreContext.DEFAULT_STORE, DAY, 2, 1, 0, 1, 90_000, 1);
+        verify(orderDailyStatsRepository, never()).insertIfAbsent(any(), any()); // The rollup of the day exists
+
+        // Nothing left to write
+        orderStatsService.flush();
+        verify(orderDailyStatsRepository, times(1)).addChanges(any(), any(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    void testRollupIsCreatedByTheFirstChangesOfTheDay() {
+        when(orderDailyStatsRepository.addChanges(any(), any(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(0, 1);
+        orderStatsService.onOrderChanged(new OrderChangedEvent(1L, "COD-21032025-0001", null, OrderStatusEnum.WAITING));
+
+        orderStatsService.flush();
+
+        // The update finds no rollup: it is created, then updated
+        InOrder inOrder = inOrder(orderDailyStatsRepository);
+        inOrder.verify(orderDailyStatsRepository).addChanges(StoreContext.DEFAULT_STORE, DAY, 1, 1, 0, 0, 0, 0);
+        inOrder.verify(orderDailyStatsRepository).insertIfAbsent(StoreContext.DEFAULT_STORE, DAY);
+        inOrder.verify(orderDailyStatsRepository).addChanges(StoreContext.DEFAULT_STORE, DAY, 1, 1, 0, 0, 0, 0);
+    }
+
+    @Test
+    void testChangesAreWrittenOnTheShardOfTheirStore() {
+        List<String> boundStores = new ArrayList<>();
+        when(orderDailyStatsRepository.addChanges(any(), any(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenAnswer(invocation -> {
+                    boundStores.add(StoreContext.current()); // Selects the shard of the transaction
+                    return 1;
+                });
+
+        orderStatsService.onOrderChanged(new OrderChangedEvent("napoli", 1L, "COD-21032025-0001", null, OrderStatusEnum.WAITING, null));
+        orderStatsService.onOrderChanged(new OrderChangedEvent(StoreContext.DEFAULT_STORE, 1L, "COD-21032025-0001", null,
+                OrderStatusEnum.WAITING, null));
+        orderStatsService.flush();
+
+        // Same day and code, but two stores: two rollups
+        verify(orderDailyStatsRepository).addChanges("napoli", DAY, 1, 1, 0, 0, 0, 0);
+        verify(orderDailyStatsRepository).addChanges(StoreContext.DEFAULT_STORE, DAY, 1, 1, 0, 0, 0, 0);
+        assertTrue(boundStores.containsAll(List.of("napoli", StoreContext.DEFAULT_STORE)));
+    }
+
+    @Test
+    void testChangesAreKeptWhenTheyCannotBeWritten() {
+        orderStatsService.onOrderChanged(new OrderChangedEvent(1L, "COD-21032025-0001", null, OrderStatusEnum.WAITING));
+        doThrow(new QueryTimeoutException("timeout")).doReturn(1)
+                .when(orderDailyStatsRepository).addChanges(any(), any(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong());
+
+        orderStatsService.flush(); // Fails
+        orderStatsService.onOrderChanged(new OrderChangedEvent(2L, "COD-21032025-0002", null, OrderStatusEnum.WAITING));
+        orderStatsService.flush();
+
+        // The failed changes are written with the new ones
+        verify(orderDailyStatsRepository).addChanges(eq(StoreContext.DEFAULT_STORE), eq(DAY), eq(2L), eq(2L), eq(0L), eq(0L), eq(0L), eq(0L));
+    }
+
+    @Test
+    void testRepairRecomputesThePreviousDayOfEveryStore() {
+        when(orderDailyStatsRepository.addChanges(any(), any(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong(), anyLong()))
+                .thenReturn(1);
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        orderStatsService.onOrderChanged(new OrderChangedEvent(1L, "COD-21032025-0001", null, OrderStatusEnum.WAITING));
+
+        orderStatsService.repair();
+
+        // The changes of this node are written before the counts are recomputed
+        InOrder inOrder = inOrder(orderDailyStatsRepository);
+        inOrder.verify(orderDailyStatsRepository).addChanges(StoreContext.DEFAULT_STORE, DAY, 1, 1, 0, 0, 0, 0);
+        inOrder.verify(orderDailyStatsRepository).recomputeCounts(eq(StoreContext.DEFAULT_STORE), eq(yesterday), anyString());
+        verify(orderDailyStatsRepository).recomputeCounts("napoli", yesterday,
+                yesterday.format(DateTimeFormatter.BASIC_ISO_DATE));
+    }
+
+    @Test
+    void testDailyStatsAreReadFromTheRollups() {
+        when(orderDailyStatsRepository.findByStoreAndOrderDayBetweenOrderByOrderDay(StoreContext.DEFAULT_STORE, DAY, DAY.plusDays(1)))
+                .thenReturn(List.of(
+                        new OrderDailyStats(StoreContext.DEFAULT_STORE, DAY, 10, 2, 1, 7, 630_000, 7),
+                        new OrderDailyStats(StoreContext.DEFAULT_STORE, DAY.plusDays(1), 3, 3, 0, 0, 0, 0)));
+
+        List<OrderDailyStatsDTO> stats = orderStatsService.getDailyStats(DAY, DAY.plusDays(1));
+
+        assertEquals("21032025", stats.get(0).getDay());
+        assertEquals(10, stats.get(0).getCreated());
+        assertEquals(90.0, stats.get(0).getAveragePreparationSeconds());
+        assertNull(stats.get(1).getAveragePreparationSeconds()); // No order completed yet
+    }
+
+    @Test
+    void testDailyStatsRejectInvalidRanges() {
+        assertThrows(IllegalArgumentException.class, () -> orderStatsService.getDailyStats(DAY, DAY.minusDays(1)));
+        assertThrows(IllegalArgumentException.class, () -> orderStatsService.getDailyStats(DAY, DAY.plusYears(2)));
+    }
+}
@@ -0,0 +1,92 @@
+package com.pizzaparty;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pizzaparty.config.CborConfig;
+import com.pizzaparty.config.WireFormat;
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.event.OrderChangedEvent;
+import com.pizzaparty.service.OrderService;
+import com.pizzaparty.service.PendingOrdersSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class PendingOrdersSnapshotTest {
+
+    @Mock
+    private OrderService orderService;
+
+    private PendingOrdersSnapshot pendingOrdersSnapshot;
+
+    private final OrderDTO margherita = new OrderDTO(1L, "main", "COD-21032025-0001", "Pizza Margherita", OrderStatusEnum.WAITING);
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this); // Initialize mocks
+        pendingOrdersSnapshot = new PendingOrdersSnapshot(orderService, new ObjectMapper(),
+                new MappingJackson2CborHttpMessageConverter(CborConfig.createObjectMapper()), Duration.ofHours(1));
+    }
+
+    @Test
+    void testSnapshotIsReusedUntilAChangeIsCommitted() {
+        when(orderService.getPendingOrders()).thenReturn(List.of(margherita));
+
+        PendingOrdersSnapshot.Snapshot first = pendingOrdersSnapshot.current();
+        PendingOrdersSnapshot.Snapshot second = pendingOrdersSnapshot.current();
+
+        // Polls without changes share the same snapshot and run a single query
+        assertSame(first, second);
+        assertTrue(new String(first.getBody(WireFormat.JSON)).contains("COD-21032025-0001"));
+        verify(orderService, times(1)).getPendingOrders();
+    }
+
+    @Test
+    void testCommittedChangeRebuildsTheSnapshot() {
+        OrderDTO diavola = new OrderDTO(2L, "main", "COD-21032025-0002", "Pizza Diavola", OrderStatusEnum.WAITING);
+        when(orderService.getPendingOrders()).thenReturn(List.of(margherita)).thenReturn(List.of(margherita, diavola));
+
+        PendingOrdersSnapshot.Snapshot first = pendingOrdersSnapshot.current();
+        pendingOrdersSnapshot.onOrderChanged(new OrderChangedEvent(2L, "COD-21032025-0002", null, OrderStatusEnum.WAITING));
+        PendingOrdersSnapshot.Snapshot second = pendingOrdersSnapshot.current();
+
+        assertEquals(first.getVersion() + 1, second.getVersion());
+        assertNotEquals(first.getEtag(WireFormat.JSON), second.getEtag(WireFormat.JSON));
+        assertTrue(new String(second.getBody(WireFormat.JSON)).contains("COD-21032025-0002"));
+    }
+
+    @Test
+    void testVersionIsKeptWhenContentDoesNotChange() {
+        when(orderService.getPendingOrders()).thenReturn(List.of(margherita));
+
+        PendingOrdersSnapshot.Snapshot first = pendingOrdersSnapshot.current();
+        // A change that does not affect the pending list, e.g. an order completed
+        pendingOrdersSnapshot.onOrderChanged(new OrderChangedEvent(3L, "COD-21032025-0003", OrderStatusEnum.PREPARATION, OrderStatusEnum.READY));
+        PendingOrdersSnapshot.Snapshot second = pendingOrdersSnapshot.current();
+
+        assertEquals(first.getEtag(WireFormat.JSON), second.getEtag(WireFormat.JSON));
+        verify(orderService, times(2)).getPendingOrders();
+    }
+
+    @Test
+    void testCborSnapshotEncodesStatusAsCode() throws Exception {
+        when(orderService.getPendingOrders()).thenReturn(List.of(margherita));
+
+        PendingOrdersSnapshot.Snapshot snapshot = pendingOrdersSnapshot.current();
+
+        // The CBOR representation has its own ETag and carries the status code instead of the name
+        assertNotEquals(snapshot.getEtag(WireFormat.JSON), snapshot.getEtag(WireFormat.CBOR));
+        ObjectMapper cborMapper = CborConfig.createObjectMapper();
+        assertEquals(OrderStatusEnum.WAITING.getCode(),
+                cborMapper.readTree(snapshot.getBody(WireFormat.CBOR)).get(0).get("status").intValue());
+        assertTrue(snapshot.getBody(WireFormat.CBOR).length < snapshot.getBody(WireFormat.JSON).length);
+    }
+}
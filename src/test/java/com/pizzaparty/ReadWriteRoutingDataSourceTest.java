@@ -0,0 +1,113 @@
+package com.pizzaparty;
+
+import com.pizzaparty.config.DataSourceRouting;
+import com.pizzaparty.config.ReadWriteRoutingDataSource;
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import com.pizzaparty.event.OrderChangedEvent;
+import com.pizzaparty.service.ReadYourWritesTracker;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReadWriteRoutingDataSourceTest {
+
+    private JdbcTemplate jdbcTemplate;
+
+    private TransactionTemplate readWriteTransaction;
+
+    private TransactionTemplate readOnlyTransaction;
+
+    @BeforeEach
+    void setUp() {
+        // Two local databases standing in for the primary and the replica, each knowing its own name
+        DataSource primary = database("primary");
+        DataSource replica = database("replica");
+
+        ReadWriteRoutingDataSource routingDataSource = new ReadWriteRoutingDataSource();
+        routingDataSource.setTargetDataSources(Map.of(
+                DataSourceRouting.Route.PRIMARY, primary,
+                DataSourceRouting.Route.REPLICA, replica));
+        routingDataSource.setDefaultTargetDataSource(primary);
+        routingDataSource.afterPropertiesSet();
+        DataSource dataSource = new LazyConnectionDataSourceProxy(routingDataSource);
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readWriteTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Test
+    void testReadWriteTransactionGoesToPrimary() {
+        assertEquals("primary", readWriteTransaction.execute(status -> currentDatabase()));
+    }
+
+    @Test
+    void testReadOnlyTransactionGoesToReplica() {
+        assertEquals("replica", readOnlyTransaction.execute(status -> currentDatabase()));
+    }
+
+    @Test
+    void testNoTransactionGoesToPrimary() {
+        assertEquals("primary", currentDatabase());
+    }
+
+    @Test
+    void testForcedPrimaryOverridesReadOnlyTransaction() {
+        // Read-your-writes fallback: a read-only operation forced to the primary
+        String database = DataSourceRouting.on(DataSourceRouting.Route.PRIMARY,
+                () -> readOnlyTransaction.execute(status -> currentDatabase()));
+
+        assertEquals("primary", database);
+        assertNull(DataSourceRouting.forcedRoute()); // The hint does not leak after the block
+    }
+
+    @Test
+    void testTrackerSendsRecentlyChangedOrdersToPrimary() {
+        ReadYourWritesTracker tracker = new ReadYourWritesTracker(Duration.ofMinutes(1));
+        assertFalse(tracker.mustReadListsFromPrimary());
+
+        tracker.onOrderChanged(new OrderChangedEvent(1L, "COD-21032025-0001", null, OrderStatusEnum.WAITING));
+
+        assertTrue(tracker.mustReadFromPrimary(StoreContext.DEFAULT_STORE, "COD-21032025-0001"));
+        assertFalse(tracker.mustReadFromPrimary(StoreContext.DEFAULT_STORE, "COD-21032025-0002")); // Other orders can still be read from the replica
+        assertFalse(tracker.mustReadFromPrimary("napoli", "COD-21032025-0001")); // Same code, other store
+        assertTrue(tracker.mustReadListsFromPrimary());
+    }
+
+    @Test
+    void testTrackerForgetsChangesOutsideTheWindow() {
+        ReadYourWritesTracker tracker = new ReadYourWritesTracker(Duration.ZERO);
+
+        tracker.onOrderChanged(new OrderChangedEvent(1L, "COD-21032025-0001", null, OrderStatusEnum.WAITING));
+
+        assertFalse(tracker.mustReadFromPrimary(StoreContext.DEFAULT_STORE, "COD-21032025-0001"));
+        assertFalse(tracker.mustReadListsFromPrimary());
+    }
+
+    private String currentDatabase() {
+        return jdbcTemplate.queryForObject("SELECT name FROM database_name", String.class);
+    }
+
+    private static DataSource database(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS database_name (name VARCHAR(20))");
+        jdbcTemplate.update("DELETE FROM database_name");
+        jdbcTemplate.update("INSERT INTO database_name VALUES (?)", name);
+        return dataSource;
+    }
+}
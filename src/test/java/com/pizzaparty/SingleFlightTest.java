@@ -0,0 +1,126 @@
+package com.pizzaparty;
+
+import com.pizzaparty.exceptions.OrderNotFoundException;
+import com.pizzaparty.service.SingleFlight;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>();
+
+    @Test
+    void testConcurrentCallsShareOneExecution() throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            // The first call stays in flight until all the others have been submitted
+            Future<String> first = executor.submit(() -> singleFlight.execute("pending", () -> {
+                executions.incrementAndGet();
+                firstStarted.countDown();
+                await(release);
+                return "result";
+            }));
+            assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+
+            List<Future<String>> others = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                others.add(executor.submit(() -> singleFlight.execute("pending", () -> {
+                    executions.incrementAndGet();
+                    return "other";
+                })));
+            }
+            // Wait until every other call has joined the one in flight
+            while (singleFlight.getCollapsedCount() < others.size()) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            assertEquals("result", first.get(5, TimeUnit.SECONDS));
+            for (Future<String> other : others) {
+                assertEquals("result", other.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, executions.get());
+        assertEquals(1, singleFlight.getExecutedCount());
+        assertEquals(7, singleFlight.getCollapsedCount());
+    }
+
+    @Test
+    void testSequentialCallsAreNotCached() {
+        AtomicInteger executions = new AtomicInteger();
+
+        singleFlight.execute("pending", () -> "v" + executions.incrementAndGet());
+        String second = singleFlight.execute("pending", () -> "v" + executions.incrementAndGet());
+
+        // Once a call completes, the next one runs again and sees fresh data
+        assertEquals("v2", second);
+        assertEquals(0, singleFlight.getCollapsedCount());
+    }
+
+    @Test
+    void testExceptionIsPropagatedAndNotRemembered() {
+        assertThrows(OrderNotFoundException.class, () -> singleFlight.execute("COD-21032025-0001", () -> {
+            throw new OrderNotFoundException("Order with code COD-21032025-0001 not found");
+        }));
+
+        assertEquals("found", singleFlight.execute("COD-21032025-0001", () -> "found"));
+    }
+
+    @Test
+    void testErrorIsPropagatedToTheJoinedCalls() throws Exception {
+        CountDownLatch firstStarted = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> first = executor.submit(() -> singleFlight.execute("pending", () -> {
+                firstStarted.countDown();
+                await(release);
+                throw new StackOverflowError();
+            }));
+            assertTrue(firstStarted.await(5, TimeUnit.SECONDS));
+            Future<String> joined = executor.submit(() -> singleFlight.execute("pending", () -> "other"));
+            while (singleFlight.getCollapsedCount() < 1) {
+                Thread.onSpinWait();
+            }
+            release.countDown();
+
+            // The joined call fails with the same error instead of waiting forever
+            ExecutionException firstFailure = assertThrows(ExecutionException.class, () -> first.get(5, TimeUnit.SECONDS));
+            ExecutionException joinedFailure = assertThrows(ExecutionException.class, () -> joined.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(StackOverflowError.class, firstFailure.getCause());
+            assertSame(firstFailure.getCause(), joinedFailure.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals("found", singleFlight.execute("pending", () -> "found"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            assertTrue(latch.await(5, TimeUnit.SECONDS));
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        }
+    }
+}
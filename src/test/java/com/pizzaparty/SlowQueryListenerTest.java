@@ -0,0 +1,93 @@
+package com.pizzaparty;
+
+import com.pizzaparty.config.SlowQueryListener;
+import com.pizzaparty.config.SqlInspection;
+import com.pizzaparty.config.SqlLoggingConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SlowQueryListenerTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    @Test
+    void testStatementsAreTimedByKindAndTable() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(wrap("dataSource", Duration.ofMinutes(1), 0));
+
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS \"order\" (id BIGINT, order_code VARCHAR(20))");
+        jdbcTemplate.update("INSERT INTO \"order\" (id, order_code) VALUES (?, ?)", 1L, "COD-21032025-0001");
+        jdbcTemplate.queryForList("SELECT o.id FROM \"order\" o WHERE o.order_code = ?", "COD-21032025-0001");
+        jdbcTemplate.queryForList("SELECT o.id FROM \"order\" o WHERE o.id = ?", 1L);
+
+        assertEquals(1, registry.get("pizzaparty.db.queries").tag("statement", "insert order").timer().count());
+        assertEquals(2, registry.get("pizzaparty.db.queries").tag("statement", "select order").timer().count());
+        assertEquals(0, loggedCount("slow") + loggedCount("sampled")); // Nothing slow, no sample
+    }
+
+    @Test
+    void testSlowStatementsAreAlwaysLogged() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(wrap("dataSource", Duration.ZERO, 0));
+
+        jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+
+        assertEquals(1, loggedCount("slow"));
+    }
+
+    @Test
+    void testFastStatementsAreSampled() {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(wrap("dataSource", Duration.ofMinutes(1), 1));
+
+        jdbcTemplate.queryForObject("SELECT 1", Integer.class);
+        jdbcTemplate.queryForObject("SELECT 2", Integer.class);
+
+        assertEquals(0, loggedCount("slow"));
+        assertEquals(2, loggedCount("sampled"));
+    }
+
+    @Test
+    void testOnlyTheApplicationDataSourceIsWrapped() {
+        DataSource replica = database();
+
+        assertSame(replica, postProcessor(Duration.ofMinutes(1), 0).postProcessAfterInitialization(replica, "replicaDataSource"));
+    }
+
+    @Test
+    void testStatementName() {
+        assertEquals("select order", SlowQueryListener.statementName(
+                "select o1_0.id,o1_0.description from \"order\" o1_0 where o1_0.status=?"));
+        assertEquals("update order", SlowQueryListener.statementName("update \"order\" set status=?,version=? where id=? and version=?"));
+        assertEquals("delete idempotency_record", SlowQueryListener.statementName(
+                "delete from public.idempotency_record where created_at<?"));
+        assertEquals("other", SlowQueryListener.statementName("SELECT 1"));
+    }
+
+    private DataSource wrap(String beanName, Duration slowThreshold, double sampleRate) {
+        return (DataSource) postProcessor(slowThreshold, sampleRate).postProcessAfterInitialization(database(), beanName);
+    }
+
+    private BeanPostProcessor postProcessor(Duration slowThreshold, double sampleRate) {
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        beanFactory.registerSingleton("sqlInspection", SqlLoggingConfig.sqlInspection(registry, slowThreshold, sampleRate));
+        return SqlLoggingConfig.slowQueryDataSourcePostProcessor(beanFactory.getBeanProvider(SqlInspection.class));
+    }
+
+    private double loggedCount(String reason) {
+        return registry.get("pizzaparty.db.queries.logged").tag("reason", reason).counter().count();
+    }
+
+    private static DataSource database() {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:slow-query;DB_CLOSE_DELAY=-1");
+        return dataSource;
+    }
+}
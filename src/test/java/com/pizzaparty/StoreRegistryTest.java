@@ -0,0 +1,112 @@
+package com.pizzaparty;
+
+import com.pizzaparty.config.ShardingProperties;
+import com.pizzaparty.config.SlowQueryListener;
+import com.pizzaparty.config.SqlInspection;
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.config.StoreInterceptor;
+import com.pizzaparty.config.StoreRegistry;
+import com.pizzaparty.exceptions.StoreNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.ttddyy.dsproxy.support.ProxyDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class StoreRegistryTest {
+
+    private final DataSource mainDataSource = mock(DataSource.class);
+
+    private final SqlInspection sqlInspection = new SqlInspection(
+            new SlowQueryListener(new SimpleMeterRegistry(), Duration.ofMillis(200), 0));
+
+    private StoreRegistry storeRegistry;
+
+    @AfterEach
+    void tearDown() {
+        if (storeRegistry != null) {
+            storeRegistry.destroy();
+        }
+    }
+
+    @Test
+    void testStoresAreRoutedToTheirShard() {
+        ShardingProperties properties = new ShardingProperties();
+        ShardingProperties.Shard south = new ShardingProperties.Shard();
+        south.setUrl("jdbc:h2:mem:south");
+        properties.getShards().put("south", south);
+        ShardingProperties.Store napoli = new ShardingProperties.Store();
+        napoli.setShard("south");
+        napoli.setPreparationLimit(3);
+        properties.getStores().put("napoli", napoli);
+        properties.getStores().put("roma", new ShardingProperties.Store());
+
+        storeRegistry = new StoreRegistry(properties, mainDataSource, sqlInspection);
+
+        assertEquals(Set.of(StoreContext.DEFAULT_STORE, "napoli", "roma"), storeRegistry.getStores());
+        // The main store exists without being configured, with a single order in preparation
+        assertSame(mainDataSource, storeRegistry.getDataSource(StoreContext.DEFAULT_STORE));
+        assertEquals(1, storeRegistry.getPreparationLimit(StoreContext.DEFAULT_STORE));
+        assertSame(mainDataSource, storeRegistry.getDataSource("roma"));
+        assertNotSame(mainDataSource, storeRegistry.getDataSource("napoli"));
+        assertInstanceOf(ProxyDataSource.class, storeRegistry.getDataSource("napoli")); // Statements are inspected on every shard
+        assertEquals(3, storeRegistry.getPreparationLimit("napoli"));
+        assertThrows(StoreNotFoundException.class, () -> storeRegistry.getDataSource("milano"));
+    }
+
+    @Test
+    void testInvalidConfigurationIsRejected() {
+        ShardingProperties unknownShard = new ShardingProperties();
+        ShardingProperties.Store napoli = new ShardingProperties.Store();
+        napoli.setShard("north");
+        unknownShard.getStores().put("napoli", napoli);
+        assertThrows(IllegalStateException.class, () -> new StoreRegistry(unknownShard, mainDataSource, sqlInspection));
+
+        // Store names end up in URLs and SQL statements
+        ShardingProperties invalidName = new ShardingProperties();
+        invalidName.getStores().put("Napoli'; --", new ShardingProperties.Store());
+        assertThrows(IllegalStateException.class, () -> new StoreRegistry(invalidName, mainDataSource, sqlInspection));
+    }
+
+    @Test
+    void testInterceptorBindsTheStoreOfThePath() {
+        ShardingProperties properties = new ShardingProperties();
+        properties.getStores().put("napoli", new ShardingProperties.Store());
+        storeRegistry = new StoreRegistry(properties, mainDataSource, sqlInspection);
+        StoreInterceptor interceptor = new StoreInterceptor(storeRegistry);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/stores/napoli/orders/waiting");
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("store", "napoli"));
+        assertTrue(interceptor.preHandle(request, response, null));
+        assertEquals("napoli", StoreContext.current());
+        interceptor.afterCompletion(request, response, null, null);
+        assertEquals(StoreContext.DEFAULT_STORE, StoreContext.current());
+
+        // Requests without a store in their path work on the main store
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest("GET", "/orders/waiting"), response, null));
+        assertEquals(StoreContext.DEFAULT_STORE, StoreContext.current());
+
+        MockHttpServletRequest unknown = new MockHttpServletRequest("GET", "/stores/milano/orders/waiting");
+        unknown.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("store", "milano"));
+        assertThrows(StoreNotFoundException.class, () -> interceptor.preHandle(unknown, response, null));
+    }
+
+    @Test
+    void testNestedStoresAreRestored() {
+        String inner = StoreContext.on("napoli", () -> StoreContext.on("roma", StoreContext::current));
+
+        assertEquals("roma", inner);
+        assertEquals(StoreContext.DEFAULT_STORE, StoreContext.current());
+    }
+}
@@ -0,0 +1,104 @@
+package com.pizzaparty.benchmark;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.encoder.PatternLayoutEncoder;
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.OutputStreamAppender;
+import com.pizzaparty.dto.ErrorResponseDTO;
+import com.pizzaparty.exceptions.GlobalExceptionHandler;
+import com.pizzaparty.exceptions.OrderAlreadyInPreparationException;
+import com.pizzaparty.exceptions.OrderDomainException;
+import org.openjdk.jmh.annotations.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Contention-heavy error workload: many pizzaioli taking charge of an order while another one is in preparation.
+ * Compares the previous error path (exception with stack trace, stack logged at every error, string body)
+ * with the current one (stackless domain exception, rate-limited log, error code body).
+ * The exception is thrown 64 frames deep, like from a service called through the Spring MVC and Tomcat stack,
+ * and the logs are formatted as usual but written to a null stream.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=OrderErrorPathBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class OrderErrorPathBenchmark {
+
+    private static final int CALL_DEPTH = 64;
+
+    private static final String MESSAGE = "There is already an order in preparation. Complete that one first.";
+
+    private GlobalExceptionHandler handler;
+
+    private Logger legacyLogger;
+
+    @Setup
+    public void setUp() {
+        LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+        PatternLayoutEncoder encoder = new PatternLayoutEncoder();
+        encoder.setContext(context);
+        encoder.setPattern("%d %-5level [%thread] %logger - %msg%n");
+        encoder.start();
+        OutputStreamAppender<ILoggingEvent> appender = new OutputStreamAppender<>();
+        appender.setContext(context);
+        appender.setEncoder(encoder);
+        appender.setOutputStream(OutputStream.nullOutputStream());
+        appender.start();
+        for (Class<?> loggerClass : new Class<?>[]{GlobalExceptionHandler.class, OrderErrorPathBenchmark.class}) {
+            ch.qos.logback.classic.Logger logger = context.getLogger(loggerClass);
+            logger.setLevel(Level.WARN);
+            logger.setAdditive(false);
+            logger.addAppender(appender);
+        }
+
+        handler = new GlobalExceptionHandler(10, Duration.ofSeconds(1));
+        legacyLogger = LoggerFactory.getLogger(OrderErrorPathBenchmark.class);
+    }
+
+    @Benchmark
+    public ResponseEntity<String> legacyErrorPath() {
+        try {
+            return ResponseEntity.ok(takeCharge(CALL_DEPTH, false));
+        } catch (LegacyOrderAlreadyInPreparationException ex) {
+            legacyLogger.warn("Order already in preparation: ", ex);
+            return new ResponseEntity<>(ex.getMessage(), HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @Benchmark
+    public ResponseEntity<ErrorResponseDTO> stacklessErrorPath() {
+        try {
+            takeCharge(CALL_DEPTH, true);
+            return null;
+        } catch (OrderDomainException ex) {
+            return handler.handleOrderDomainException(ex);
+        }
+    }
+
+    // Always fails, as takeCharge does when another order is in preparation
+    private static String takeCharge(int depth, boolean stackless) {
+        if (depth > 0) {
+            return takeCharge(depth - 1, stackless);
+        }
+        throw stackless ? new OrderAlreadyInPreparationException(MESSAGE) : new LegacyOrderAlreadyInPreparationException(MESSAGE);
+    }
+
+    // The exception as it was before: a RuntimeException capturing its stack trace
+    private static class LegacyOrderAlreadyInPreparationException extends RuntimeException {
+        LegacyOrderAlreadyInPreparationException(String message) {
+            super(message);
+        }
+    }
+}
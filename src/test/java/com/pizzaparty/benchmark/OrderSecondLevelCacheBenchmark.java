@@ -0,0 +1,92 @@
+package com.pizzaparty.benchmark;
+
+import com.pizzaparty.config.HibernateCacheConfig;
+import com.pizzaparty.config.StoreContext;
+import com.pizzaparty.entity.Order;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.cache.jcache.ConfigSettings;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.cfg.Configuration;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares order lookups by ID and by code with and without the second-level cache.
+ * The database is an in-memory H2, so the gain measured here is the smallest possible one:
+ * against PostgreSQL every avoided SELECT also saves a network round trip.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=OrderSecondLevelCacheBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderSecondLevelCacheBenchmark {
+
+    private static final int ORDERS = 1_000;
+
+    @Param({"false", "true"})
+    private boolean cache;
+
+    private SessionFactory sessionFactory;
+
+    private long firstId;
+
+    @Setup
+    public void setUp() {
+        Configuration configuration = new Configuration()
+                .addAnnotatedClass(Order.class)
+                .setProperty(AvailableSettings.JAKARTA_JDBC_URL, "jdbc:h2:mem:cache-benchmark;DB_CLOSE_DELAY=-1")
+                .setProperty(AvailableSettings.JAKARTA_JDBC_USER, "sa")
+                .setProperty(AvailableSettings.HBM2DDL_AUTO, "create-drop")
+                .setProperty(AvailableSettings.KEYWORD_AUTO_QUOTING_ENABLED, "true")
+                .setProperty(AvailableSettings.USE_SECOND_LEVEL_CACHE, String.valueOf(cache));
+        if (cache) {
+            configuration.setProperty(AvailableSettings.CACHE_REGION_FACTORY, "jcache");
+            configuration.getProperties().put(ConfigSettings.CACHE_MANAGER,
+                    HibernateCacheConfig.createCacheManager(50_000, Duration.ofMinutes(5), Duration.ofSeconds(2)));
+        }
+        sessionFactory = configuration.buildSessionFactory();
+
+        sessionFactory.inTransaction(session -> {
+            for (int i = 1; i <= ORDERS; i++) {
+                Order order = new Order("Pizza Margherita");
+                order.setStore(StoreContext.DEFAULT_STORE);
+                order.setOrderCode(String.format("COD-21032025-%04d", i));
+                session.persist(order);
+            }
+        });
+        firstId = sessionFactory.fromSession(session ->
+                session.createSelectionQuery("SELECT min(o.id) FROM Order o", Long.class).getSingleResult());
+    }
+
+    @TearDown
+    public void tearDown() {
+        sessionFactory.close();
+    }
+
+    @Benchmark
+    public Order findById() {
+        // A new session per lookup, like a request of takeCharge/completeOrder
+        long id = firstId + ThreadLocalRandom.current().nextInt(ORDERS);
+        try (Session session = sessionFactory.openSession()) {
+            return session.find(Order.class, id);
+        }
+    }
+
+    @Benchmark
+    public Order findByOrderCode() {
+        String code = String.format("COD-21032025-%04d", ThreadLocalRandom.current().nextInt(ORDERS) + 1);
+        try (Session session = sessionFactory.openSession()) {
+            return session.byNaturalId(Order.class)
+                    .using("store", StoreContext.DEFAULT_STORE)
+                    .using("orderCode", code)
+                    .load();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.pizzaparty.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.pizzaparty.config.CborConfig;
+import com.pizzaparty.config.WireFormat;
+import com.pizzaparty.dto.OrderDTO;
+import com.pizzaparty.enumeration.OrderStatusEnum;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the JSON and CBOR wire formats of a pending orders list: payload size (printed at setup),
+ * encoding time and decoding time.
+ * Run with: mvn -Pbenchmark test-compile exec:exec -Dbenchmark=OrderWireFormatBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderWireFormatBenchmark {
+
+    private static final TypeReference<List<OrderDTO>> ORDER_LIST = new TypeReference<>() {
+    };
+
+    @Param({"10", "200"})
+    private int orders;
+
+    @Param({"JSON", "CBOR"})
+    private WireFormat format;
+
+    private ObjectMapper mapper;
+
+    private List<OrderDTO> pendingOrders;
+
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws Exception {
+        mapper = format == WireFormat.CBOR ? CborConfig.createObjectMapper() : Jackson2ObjectMapperBuilder.json().build();
+
+        // A realistic pending list: consecutive codes of the same day and short descriptions
+        pendingOrders = new ArrayList<>(orders);
+        for (int i = 1; i <= orders; i++) {
+            pendingOrders.add(new OrderDTO((long) i, "main", String.format("COD-21032025-%04d", i),
+                    "Pizza Margherita, senza glutine, extra basilico", OrderStatusEnum.WAITING));
+        }
+        payload = mapper.writeValueAsBytes(pendingOrders);
+        System.out.printf("%n%s payload for %d orders: %d bytes%n", format, orders, payload.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws Exception {
+        return mapper.writeValueAsBytes(pendingOrders);
+    }
+
+    @Benchmark
+    public List<OrderDTO> decode() throws Exception {
+        return mapper.readValue(payload, ORDER_LIST);
+    }
+}